@@ -0,0 +1,81 @@
+package com.marryat.benchmark;
+
+import com.marryat.MarryatHotelsReservationsApplication;
+import com.marryat.domain.Reservation;
+import com.marryat.service.GroupCommitWriter;
+import com.marryat.service.ReservationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of concurrent reservation creations, each saved in its own transaction or coalesced by the group commit
+ * writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(32)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GroupCommitBenchmark {
+    private static final int ROOMS = 100;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2000, 1, 1);
+
+    @Param({"true", "false"})
+    public boolean groupCommit;
+
+    private ConfigurableApplicationContext context;
+    private ReservationService reservationService;
+    private GroupCommitWriter groupCommitWriter;
+    private final AtomicLong saved = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(MarryatHotelsReservationsApplication.class)
+                .web(false)
+                .run("--reservations.group-commit.enabled=" + groupCommit, "--reservations.rooms.count=" + ROOMS,
+                        "--logging.level.root=WARN");
+        reservationService = context.getBean(ReservationService.class);
+        groupCommitWriter = groupCommit ? context.getBean(GroupCommitWriter.class) : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Reservation create() {
+        Reservation reservation = stay(saved.getAndIncrement());
+        return groupCommit ? groupCommitWriter.save(reservation) : reservationService.save(reservation);
+    }
+
+    private static Reservation stay(long n) {
+        Reservation reservation = new Reservation();
+        reservation.setFirstName("John");
+        reservation.setLastName("Doe");
+        reservation.setRoomNumber((int) (n % ROOMS) + 1);
+        reservation.setStartDate(FIRST_DAY.plusDays(n / ROOMS));
+        reservation.setEndDate(reservation.getStartDate());
+        return reservation;
+    }
+}
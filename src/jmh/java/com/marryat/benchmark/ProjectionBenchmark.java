@@ -0,0 +1,116 @@
+package com.marryat.benchmark;
+
+import com.marryat.MarryatHotelsReservationsApplication;
+import com.marryat.domain.Reservation;
+import com.marryat.repository.ReservationRepository;
+import com.marryat.service.ReservationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read of the reservations of a date range, as managed entities or through the constructor expression of
+ * {@link ReservationRepository#findReservationsWithinDateRange(LocalDate, LocalDate)}, both in a read-only
+ * transaction. Run with {@code -prof gc} to compare the memory allocated per read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ProjectionBenchmark {
+    private static final int ROOMS = 100;
+    private static final int ROWS = 100_000;
+    private static final int SEED_BATCH_SIZE = 1000;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2000, 1, 1);
+
+    @Param({"7", "90"})
+    public int rangeDays;
+
+    private ConfigurableApplicationContext context;
+    private ReservationRepository reservationRepository;
+    private EntityManager entityManager;
+    private TransactionTemplate readOnlyTransaction;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(MarryatHotelsReservationsApplication.class)
+                .web(false)
+                .run("--reservations.rooms.count=" + ROOMS, "--logging.level.root=WARN");
+        reservationRepository = context.getBean(ReservationRepository.class);
+        entityManager = context.getBean(EntityManager.class);
+        readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+        seed(context.getBean(ReservationService.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Reservation> entities() {
+        LocalDate from = from();
+        return readOnlyTransaction.execute(status -> entityManager.createQuery(
+                "select r from Reservation r where r.hotelId = ?3 and r.startDate <= ?2 and r.endDate >= ?1",
+                Reservation.class)
+                .setParameter(1, from)
+                .setParameter(2, from.plusDays(rangeDays - 1))
+                .setParameter(3, Reservation.DEFAULT_HOTEL_ID)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<Reservation> projection() {
+        LocalDate from = from();
+        return readOnlyTransaction.execute(status ->
+                reservationRepository.findReservationsWithinDateRange(Reservation.DEFAULT_HOTEL_ID, from,
+                        from.plusDays(rangeDays - 1)));
+    }
+
+    private LocalDate from() {
+        return FIRST_DAY.plusDays(ThreadLocalRandom.current().nextLong(ROWS / ROOMS - rangeDays));
+    }
+
+    /**
+     * Book every room for every day, so that a range of n days has about n * 100 reservations.
+     */
+    private static void seed(ReservationService reservationService) {
+        for (int offset = 0; offset < ROWS; offset += SEED_BATCH_SIZE) {
+            List<Reservation> batch = new ArrayList<>(SEED_BATCH_SIZE);
+            for (int i = offset; i < offset + SEED_BATCH_SIZE; i++) {
+                Reservation reservation = new Reservation();
+                reservation.setFirstName("John");
+                reservation.setLastName("Doe");
+                reservation.setRoomNumber(i % ROOMS + 1);
+                reservation.setStartDate(FIRST_DAY.plusDays(i / ROOMS));
+                reservation.setEndDate(reservation.getStartDate());
+                batch.add(reservation);
+            }
+            reservationService.saveAll(batch);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.marryat.benchmark;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marryat.config.JacksonConfig;
+import com.marryat.domain.Reservation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the JSON (de)serialization of reservation lists through the OBJECT_MAPPER_BEAN.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReservationSerializationBenchmark {
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+    private JavaType listType;
+    private List<Reservation> reservations;
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(JacksonConfig.class)) {
+            objectMapper = context.getBean("OBJECT_MAPPER_BEAN", ObjectMapper.class);
+        }
+        listType = objectMapper.getTypeFactory().constructCollectionType(List.class, Reservation.class);
+        reservations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Reservation reservation = new Reservation();
+            reservation.setId((long) i + 1);
+            reservation.setFirstName("John");
+            reservation.setLastName("Doe");
+            reservation.setRoomNumber(i % 100 + 1);
+            reservation.setStartDate(LocalDate.of(2017, 11, 10).plusDays(i / 100));
+            reservation.setEndDate(reservation.getStartDate().plusDays(3));
+            reservations.add(reservation);
+        }
+        json = objectMapper.writeValueAsBytes(reservations);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(reservations);
+    }
+
+    @Benchmark
+    public List<Reservation> deserialize() throws IOException {
+        return objectMapper.readValue(json, listType);
+    }
+}
@@ -0,0 +1,123 @@
+package com.marryat.benchmark;
+
+import com.marryat.MarryatHotelsReservationsApplication;
+import com.marryat.domain.Reservation;
+import com.marryat.service.BatchItemResult;
+import com.marryat.service.ReservationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks of the ReservationService read and write paths against an in-memory H2 database seeded with
+ * {@code rows} reservations. Larger tables need a larger heap, e.g. {@code -p rows=10000000 -jvmArgsAppend -Xmx16g}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReservationServiceBenchmark {
+    private static final int ROOMS = 100;
+    private static final int SEED_BATCH_SIZE = 1000;
+    private static final int DAYS_PER_STAY = 3;
+    private static final int RANGE_DAYS = 7;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2000, 1, 1);
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    @Param({"true", "false"})
+    public boolean cacheEnabled;
+
+    private ConfigurableApplicationContext context;
+    private ReservationService reservationService;
+    private long firstId;
+    private long seededDays;
+    private final AtomicLong saved = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(MarryatHotelsReservationsApplication.class)
+                .web(false)
+                .run("--reservations.cache.enabled=" + cacheEnabled,
+                        "--reservations.range-cache.enabled=" + cacheEnabled,
+                        "--reservations.rooms.count=" + ROOMS, "--logging.level.root=WARN");
+        reservationService = context.getBean(ReservationService.class);
+        firstId = seed();
+        seededDays = (long) rows / ROOMS * DAYS_PER_STAY;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Reservation findOne() {
+        long id = firstId + ThreadLocalRandom.current().nextLong(rows);
+        return reservationService.findOne(Reservation.DEFAULT_HOTEL_ID, id);
+    }
+
+    @Benchmark
+    public List<Reservation> findReservationsByDateRange() {
+        LocalDate from = FIRST_DAY.plusDays(ThreadLocalRandom.current().nextLong(seededDays));
+        return reservationService.findReservationsByDateRange(Reservation.DEFAULT_HOTEL_ID, from,
+                from.plusDays(RANGE_DAYS - 1));
+    }
+
+    @Benchmark
+    public Reservation save() {
+        return reservationService.save(stay(rows + saved.getAndIncrement()));
+    }
+
+    /**
+     * Save {@code rows} stays, every room being booked for two nights out of three.
+     *
+     * @return the id of the first reservation, the others following it
+     */
+    private long seed() {
+        Long first = null;
+        for (int offset = 0; offset < rows; offset += SEED_BATCH_SIZE) {
+            List<Reservation> batch = new ArrayList<>(SEED_BATCH_SIZE);
+            for (int i = offset; i < Math.min(rows, offset + SEED_BATCH_SIZE); i++) {
+                batch.add(stay(i));
+            }
+            List<BatchItemResult> results = reservationService.saveAll(batch);
+            if (first == null) {
+                first = results.get(0).getId();
+            }
+        }
+        return first;
+    }
+
+    private static Reservation stay(long n) {
+        Reservation reservation = new Reservation();
+        reservation.setFirstName("John");
+        reservation.setLastName("Doe");
+        reservation.setRoomNumber((int) (n % ROOMS) + 1);
+        reservation.setStartDate(FIRST_DAY.plusDays(n / ROOMS * DAYS_PER_STAY));
+        reservation.setEndDate(reservation.getStartDate().plusDays(DAYS_PER_STAY - 2));
+        return reservation;
+    }
+}
@@ -1,9 +1,14 @@
 package com.marryat;
 
+import com.marryat.config.ReservationProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableConfigurationProperties(ReservationProperties.class)
+@EnableScheduling
 public class MarryatHotelsReservationsApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,134 @@
+package com.marryat.aop;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Aspect timing every REST endpoint and every repository call.
+ * <p>
+ * Each call updates the timer {@code timer.<layer>.<class>.<method>}, holding the call count and the latency
+ * percentiles, async endpoints being timed until their response is ready. Calls throwing an exception, and endpoints
+ * answering with a 5xx status, also increment the counter {@code counter.<layer>.<class>.<method>.errors}.
+ * Repository calls returning several rows update the histogram {@code histogram.repository.<class>.<method>.rows}
+ * with their row count, counted as they are consumed for streams.
+ * The metrics are published on the actuator /metrics endpoint.
+ */
+@Aspect
+@Component
+public class MetricsAspect {
+
+    private final MetricRegistry metricRegistry;
+
+    @Autowired
+    public MetricsAspect(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Pointcut("@annotation(org.springframework.web.bind.annotation.RequestMapping)" +
+            " || @annotation(org.springframework.web.bind.annotation.GetMapping)" +
+            " || @annotation(org.springframework.web.bind.annotation.PostMapping)" +
+            " || @annotation(org.springframework.web.bind.annotation.PutMapping)" +
+            " || @annotation(org.springframework.web.bind.annotation.DeleteMapping)")
+    public void endpoint() {
+        // Method is empty as this is just a Pointcut, the implementations are in the advices.
+    }
+
+    @Pointcut("this(org.springframework.data.repository.Repository)")
+    public void repositoryCall() {
+        // Method is empty as this is just a Pointcut, the implementations are in the advices.
+    }
+
+    @Around("endpoint()")
+    public Object timeEndpoint(ProceedingJoinPoint joinPoint) throws Throwable {
+        String name = name("controller", joinPoint);
+        Timer.Context context = metricRegistry.timer("timer." + name).time();
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            context.stop();
+            errors(name).inc();
+            throw e;
+        }
+        if (result instanceof CompletionStage) {
+            // Async endpoints are timed until their response is ready, not just until they return
+            ((CompletionStage<?>) result).whenComplete((response, e) -> {
+                context.stop();
+                if (e != null || isServerError(response)) {
+                    errors(name).inc();
+                }
+            });
+        } else {
+            context.stop();
+            if (isServerError(result)) {
+                errors(name).inc();
+            }
+        }
+        return result;
+    }
+
+    @Around("repositoryCall()")
+    public Object timeRepositoryCall(ProceedingJoinPoint joinPoint) throws Throwable {
+        String name = name("repository", joinPoint);
+        Object result = time(name, joinPoint);
+        if (result instanceof Collection) {
+            rows(name).update(((Collection<?>) result).size());
+        } else if (result instanceof Stream) {
+            Histogram rows = rows(name);
+            AtomicLong count = new AtomicLong();
+            result = ((Stream<?>) result).peek(row -> count.incrementAndGet()).onClose(() -> rows.update(count.get()));
+        }
+        return result;
+    }
+
+    private Object time(String name, ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Context context = metricRegistry.timer("timer." + name).time();
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            errors(name).inc();
+            throw e;
+        } finally {
+            context.stop();
+        }
+    }
+
+    private Counter errors(String name) {
+        return metricRegistry.counter("counter." + name + ".errors");
+    }
+
+    private static boolean isServerError(Object response) {
+        return response instanceof ResponseEntity && ((ResponseEntity<?>) response).getStatusCode().is5xxServerError();
+    }
+
+    private Histogram rows(String name) {
+        return metricRegistry.histogram("histogram." + name + ".rows");
+    }
+
+    private static String name(String layer, ProceedingJoinPoint joinPoint) {
+        Class<?> type = joinPoint.getSignature().getDeclaringType();
+        if (!type.getName().startsWith("com.marryat")) {
+            // Methods inherited from Spring Data are named after the repository they are called on
+            for (Class<?> proxiedInterface : joinPoint.getThis().getClass().getInterfaces()) {
+                if (proxiedInterface.getName().startsWith("com.marryat")) {
+                    type = proxiedInterface;
+                }
+            }
+        }
+        return layer + "." + type.getSimpleName() + "." + joinPoint.getSignature().getName();
+    }
+}
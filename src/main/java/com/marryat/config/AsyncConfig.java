@@ -0,0 +1,66 @@
+package com.marryat.config;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.InstrumentedExecutorService;
+import com.codahale.metrics.MetricRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the async mode, enabled by "reservations.async.enabled": the executor the reservation endpoints
+ * run their blocking calls on, and the timeout of the async requests.
+ * <p>
+ * The executor has a bounded queue, and rejects the requests that would go beyond it rather than letting them wait
+ * for ever. It publishes metrics under {@code executor.reservations}: submitted, running and completed tasks, task
+ * duration, rejected tasks, queue size and active threads.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "reservations.async", name = "enabled", havingValue = "true")
+public class AsyncConfig extends WebMvcConfigurerAdapter {
+    public static final String EXECUTOR_BEAN = "RESERVATION_EXECUTOR_BEAN";
+    private static final String METRIC_PREFIX = "executor.reservations";
+
+    private final ReservationProperties.Async properties;
+    private final MetricRegistry metricRegistry;
+
+    @Autowired
+    public AsyncConfig(ReservationProperties properties, MetricRegistry metricRegistry) {
+        this.properties = properties.getAsync();
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Bean(name = EXECUTOR_BEAN)
+    public ExecutorService reservationExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(properties.getCorePoolSize(),
+                properties.getMaxPoolSize(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                new CustomizableThreadFactory("reservation-"),
+                (task, pool) -> {
+                    metricRegistry.counter(MetricRegistry.name(METRIC_PREFIX, "rejected")).inc();
+                    throw new RejectedExecutionException("Reservation executor saturated");
+                });
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "queue"),
+                (Gauge<Integer>) () -> executor.getQueue().size());
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "active"),
+                (Gauge<Integer>) executor::getActiveCount);
+        return new InstrumentedExecutorService(executor, metricRegistry, METRIC_PREFIX);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(properties.getTimeoutMillis());
+        configurer.setTaskExecutor(new ConcurrentTaskExecutor(reservationExecutor()));
+    }
+}
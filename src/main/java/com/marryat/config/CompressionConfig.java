@@ -0,0 +1,27 @@
+package com.marryat.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of the response compression, enabled by "server.compression.enabled": the container gzips the
+ * responses of the clients accepting it once they are larger than "server.compression.min-response-size", which
+ * needs the reservation responses to be buffered, up to that size, so that their size is known. Applications started
+ * without web environment, like the benchmarks, have neither container nor server properties.
+ */
+@Configuration
+@ConditionalOnWebApplication
+@ConditionalOnProperty(prefix = "server.compression", name = "enabled", havingValue = "true")
+public class CompressionConfig {
+    @Bean
+    public FilterRegistrationBean responseBufferingFilter(ServerProperties serverProperties) {
+        FilterRegistrationBean registration = new FilterRegistrationBean(
+                new ResponseBufferingFilter(serverProperties.getCompression().getMinResponseSize()));
+        registration.addUrlPatterns("/reservations", "/reservations/*", "/rooms/*", "/reports/*");
+        return registration;
+    }
+}
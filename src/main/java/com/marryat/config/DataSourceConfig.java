@@ -0,0 +1,66 @@
+package com.marryat.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceBuilder;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration of the read replicas, enabled by "reservations.replicas.enabled": read-only transactions are routed to
+ * the replicas at "reservations.replicas.urls", and all other transactions to the "spring.datasource" primary.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "reservations.replicas", name = "enabled", havingValue = "true")
+public class DataSourceConfig {
+
+    private final DataSourceProperties dataSourceProperties;
+    private final ReservationProperties.Replicas replicas;
+    private DataSource primary;
+
+    @Autowired
+    public DataSourceConfig(DataSourceProperties dataSourceProperties, ReservationProperties properties) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.replicas = properties.getReplicas();
+    }
+
+    @Bean
+    public ReplicaSelector replicaSelector() {
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        List<String> urls = replicas.getUrls();
+        for (int i = 0; i < urls.size(); i++) {
+            dataSources.put("replica-" + i, DataSourceBuilder.create()
+                    .driverClassName(dataSourceProperties.determineDriverClassName())
+                    .url(urls.get(i))
+                    .username(replicas.getUsername())
+                    .password(replicas.getPassword())
+                    .build());
+        }
+        return new ReplicaSelector(dataSources, replicas.getSelection());
+    }
+
+    /**
+     * The primary pool isn't a bean of its own, so that the datasource initialization of Spring Boot only sees the
+     * routing datasource.
+     */
+    @Bean
+    public DataSource dataSource() {
+        primary = dataSourceProperties.initializeDataSourceBuilder().build();
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replicaSelector()));
+    }
+
+    @PreDestroy
+    public void closePrimary() {
+        if (primary != null) {
+            ReplicaSelector.closePool(primary);
+        }
+    }
+}
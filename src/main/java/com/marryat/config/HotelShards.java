@@ -0,0 +1,127 @@
+package com.marryat.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The shard database of every hotel, configured under "reservations.shards". Shard 0 is the "spring.datasource"
+ * primary and holds the hotels that aren't mapped to another shard, which are all of them while sharding is disabled.
+ * <p>
+ * The shard the statements go to is the one bound to the current transaction by {@link #bindTransaction(int)}, or
+ * else the one the calling thread runs on within {@link #onShard(int, Supplier)}, or else shard 0. The id sequence
+ * of every shard counts from a block of {@link #ID_BLOCK} ids of its own, so that a reservation id is unique over all
+ * the shards, whichever shard its pool of ids was allocated from.
+ */
+@Component
+public class HotelShards {
+    public static final int PRIMARY_SHARD = 0;
+    public static final long ID_BLOCK = 1L << 40;
+
+    private static final ThreadLocal<Integer> THREAD_SHARD = new ThreadLocal<>();
+    private static final Object TRANSACTION_SHARD = new Object();
+
+    private final Map<Integer, Integer> hotels;
+    private final List<Integer> shards;
+
+    @Autowired
+    public HotelShards(ReservationProperties properties) {
+        ReservationProperties.Shards config = properties.getShards();
+        int lastShard = config.isEnabled() ? config.getUrls().size() : PRIMARY_SHARD;
+        this.hotels = config.isEnabled() ? new HashMap<>(config.getHotels()) : Collections.emptyMap();
+        this.hotels.forEach((hotelId, shard) -> {
+            if (shard < PRIMARY_SHARD || shard > lastShard) {
+                throw new IllegalStateException("Hotel " + hotelId + " is mapped to shard " + shard +
+                        ", but only the shards 0 to " + lastShard + " are configured");
+            }
+        });
+        this.shards = Collections.unmodifiableList(
+                IntStream.rangeClosed(PRIMARY_SHARD, lastShard).boxed().collect(Collectors.toList()));
+    }
+
+    /**
+     * @param hotelId the hotel
+     * @return the shard holding the reservations of the hotel
+     */
+    public int shardOf(Integer hotelId) {
+        return hotels.getOrDefault(hotelId, PRIMARY_SHARD);
+    }
+
+    /**
+     * @return all the shards, in ascending order
+     */
+    public List<Integer> getShards() {
+        return shards;
+    }
+
+    /**
+     * Run an action on a shard: the transactions it starts, and the statements it runs outside of transactions, go
+     * to the shard. A transaction already started keeps going to its own shard.
+     *
+     * @param shard  the shard
+     * @param action the action
+     * @return the result of the action
+     */
+    public static <T> T onShard(int shard, Supplier<T> action) {
+        Integer previous = THREAD_SHARD.get();
+        THREAD_SHARD.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                THREAD_SHARD.remove();
+            } else {
+                THREAD_SHARD.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Send the statements of the current transaction to a shard, until it completes. The transaction must not have
+     * run any statement on another shard yet, as its connection is only requested on the first statement. Transactions
+     * started while it is bound, such as the new transactions of the room locks, run on the same shard. Outside of
+     * transactions, the call has no effect.
+     *
+     * @param shard the shard
+     * @throws IllegalStateException if the transaction is already bound to another shard
+     */
+    public static void bindTransaction(int shard) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Integer bound = (Integer) TransactionSynchronizationManager.getResource(TRANSACTION_SHARD);
+        if (bound != null) {
+            if (bound != shard) {
+                throw new IllegalStateException("The transaction runs on shard " + bound + ", not on shard " + shard);
+            }
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(TRANSACTION_SHARD, shard);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResource(TRANSACTION_SHARD);
+            }
+        });
+    }
+
+    /**
+     * @return the shard the statements of the calling thread go to
+     */
+    public static int currentShard() {
+        Integer shard = (Integer) TransactionSynchronizationManager.getResource(TRANSACTION_SHARD);
+        if (shard == null) {
+            shard = THREAD_SHARD.get();
+        }
+        return shard == null ? PRIMARY_SHARD : shard;
+    }
+}
@@ -1,24 +1,63 @@
 package com.marryat.config;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import com.fasterxml.jackson.datatype.jsr310.JSR310Module;
+import com.marryat.domain.Reservation;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import java.util.List;
 
 /**
- * Configuration that defines object mapper that is able to map LocalDate
+ * Configuration that defines object mapper that is able to map LocalDate, and serves the same model in Smile to the
+ * clients asking for it
  */
 @Configuration
-public class JacksonConfig {
+public class JacksonConfig extends WebMvcConfigurerAdapter {
+    /**
+     * The Jackson property filter of reservations, serializing all their properties unless a request replaces it.
+     */
+    public static final String RESERVATION_FILTER = "reservation";
+
     @Bean(name = "OBJECT_MAPPER_BEAN")
     public ObjectMapper jsonObjectMapper() {
+        return builder().build();
+    }
+
+    /**
+     * Smile goes after the JSON converter, so that JSON remains the format of the requests accepting any.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new SmileHttpMessageConverter());
+    }
+
+    /**
+     * Apply the JSON mapper settings to a mapper of another format.
+     */
+    static ObjectMapper configure(ObjectMapper objectMapper) {
+        builder().configure(objectMapper);
+        return objectMapper;
+    }
+
+    private static Jackson2ObjectMapperBuilder builder() {
         return Jackson2ObjectMapperBuilder.json()
                 .serializationInclusion(JsonInclude.Include.NON_NULL) // Don’t include null values
                 .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS) //ISODate
                 .modules(new JSR310Module())
-                .build();
+                .mixIn(Reservation.class, ReservationMixin.class)
+                .filters(new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll()));
+    }
+
+    @JsonFilter(RESERVATION_FILTER)
+    abstract static class ReservationMixin {
     }
 }
@@ -0,0 +1,92 @@
+package com.marryat.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * Datasource sending the connections of read-only transactions to a replica, and all others to the primary. A
+ * read-only transaction falls back to the primary when no replica is healthy or when the connection to the chosen
+ * replica fails.
+ * <p>
+ * The transaction has to be known to be read-only when the connection is requested, so the datasource is meant to be
+ * wrapped in a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which only requests it on
+ * the first statement.
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final DataSource primary;
+    private final ReplicaSelector replicaSelector;
+
+    public ReadWriteRoutingDataSource(DataSource primary, ReplicaSelector replicaSelector) {
+        this.primary = primary;
+        this.replicaSelector = replicaSelector;
+    }
+
+    /**
+     * Run an action whose reads must not lag behind the primary, such as the loading of state that later writes are
+     * checked against, on the primary whether or not its transactions are read-only.
+     *
+     * @param action the action
+     * @return the result of the action
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        boolean primaryOnly = PRIMARY_ONLY.get();
+        PRIMARY_ONLY.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            PRIMARY_ONLY.set(primaryOnly);
+        }
+    }
+
+    /**
+     * @return whether the reads of the current thread go to the primary, within {@link #onPrimary(Supplier)}
+     */
+    public static boolean isPrimaryOnly() {
+        return PRIMARY_ONLY.get();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        String replica = selectReplica();
+        if (replica != null) {
+            try {
+                return replicaSelector.dataSource(replica).getConnection();
+            } catch (SQLException e) {
+                LOGGER.warn("Couldn't connect to replica {}, reading from the primary : {}", replica, e.getMessage());
+                replicaSelector.markDown(replica);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        String replica = selectReplica();
+        if (replica != null) {
+            try {
+                return replicaSelector.dataSource(replica).getConnection(username, password);
+            } catch (SQLException e) {
+                LOGGER.warn("Couldn't connect to replica {}, reading from the primary : {}", replica, e.getMessage());
+                replicaSelector.markDown(replica);
+            }
+        }
+        return primary.getConnection(username, password);
+    }
+
+    private String selectReplica() {
+        if (PRIMARY_ONLY.get() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return null;
+        }
+        return replicaSelector.select();
+    }
+}
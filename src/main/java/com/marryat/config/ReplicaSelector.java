@@ -0,0 +1,142 @@
+package com.marryat.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ReflectionUtils;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the replica of a read-only transaction among the healthy ones. A replica is marked down when a connection
+ * to it fails, and up again when a periodic check manages to run a query on it.
+ */
+public class ReplicaSelector {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaSelector.class);
+    private static final String VALIDATION_QUERY = "SELECT 1";
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final ReservationProperties.Replicas.Selection selection;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param replicas  the datasources of the replicas by name, owned by the selector from then on
+     * @param selection how to choose among the healthy replicas
+     */
+    public ReplicaSelector(Map<String, DataSource> replicas, ReservationProperties.Replicas.Selection selection) {
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        this.selection = selection;
+    }
+
+    /**
+     * @return the name of a healthy replica, or null if all are down
+     */
+    public String select() {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        int first = selection == ReservationProperties.Replicas.Selection.RANDOM ?
+                ThreadLocalRandom.current().nextInt(size) : Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((first + i) % size);
+            if (replica.healthy) {
+                return replica.name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param name the name of a replica
+     * @return its datasource
+     */
+    public DataSource dataSource(String name) {
+        return find(name).dataSource;
+    }
+
+    /**
+     * Stop choosing the replica until the health check finds it up again.
+     *
+     * @param name the name of the replica
+     */
+    public void markDown(String name) {
+        Replica replica = find(name);
+        if (replica.healthy) {
+            LOGGER.warn("Replica {} is down", name);
+            replica.healthy = false;
+        }
+    }
+
+    /**
+     * @return the names of the healthy replicas
+     */
+    public List<String> healthyReplicas() {
+        List<String> names = new ArrayList<>();
+        replicas.stream().filter(replica -> replica.healthy).forEach(replica -> names.add(replica.name));
+        return Collections.unmodifiableList(names);
+    }
+
+    @Scheduled(fixedDelayString = "${reservations.replicas.health-check-interval-millis:5000}")
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute(VALIDATION_QUERY);
+                healthy = true;
+            } catch (SQLException e) {
+                healthy = false;
+            }
+            if (healthy != replica.healthy) {
+                LOGGER.warn("Replica {} is {}", replica.name, healthy ? "up" : "down");
+                replica.healthy = healthy;
+            }
+        }
+    }
+
+    /**
+     * Close the connection pools of the replicas.
+     */
+    @PreDestroy
+    public void close() {
+        replicas.forEach(replica -> closePool(replica.dataSource));
+    }
+
+    /**
+     * Close a connection pool through its close method, if it has one, as a container would for a bean.
+     */
+    static void closePool(DataSource dataSource) {
+        Method close = ReflectionUtils.findMethod(dataSource.getClass(), "close");
+        if (close != null) {
+            ReflectionUtils.invokeMethod(close, dataSource);
+        }
+    }
+
+    private Replica find(String name) {
+        return replicas.stream().filter(replica -> replica.name.equals(name)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown replica " + name));
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
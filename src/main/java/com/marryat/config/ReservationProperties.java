@@ -0,0 +1,506 @@
+package com.marryat.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Properties specific to the reservations application, configured under the "reservations" prefix.
+ */
+@ConfigurationProperties(prefix = "reservations", ignoreUnknownFields = false)
+public class ReservationProperties {
+
+    private final Cache cache = new Cache();
+    private final RangeCache rangeCache = new RangeCache();
+    private final Rooms rooms = new Rooms();
+    private final Async async = new Async();
+    private final Replicas replicas = new Replicas();
+    private final GroupCommit groupCommit = new GroupCommit();
+    private final Locking locking = new Locking();
+    private final Archive archive = new Archive();
+    private final Changes changes = new Changes();
+    private final Shards shards = new Shards();
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public RangeCache getRangeCache() {
+        return rangeCache;
+    }
+
+    public Rooms getRooms() {
+        return rooms;
+    }
+
+    public Async getAsync() {
+        return async;
+    }
+
+    public Replicas getReplicas() {
+        return replicas;
+    }
+
+    public GroupCommit getGroupCommit() {
+        return groupCommit;
+    }
+
+    public Locking getLocking() {
+        return locking;
+    }
+
+    public Archive getArchive() {
+        return archive;
+    }
+
+    public Changes getChanges() {
+        return changes;
+    }
+
+    public Shards getShards() {
+        return shards;
+    }
+
+    public static class Cache {
+        private boolean enabled = true;
+        private long maximumSize = 10_000;
+        private long timeToLiveSeconds = 300;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public long getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+    }
+
+    public static class RangeCache {
+        private boolean enabled = true;
+        private long maximumSize = 1000;
+        private long timeToLiveSeconds = 60;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the number of date ranges whose reservations are cached
+         */
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public long getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+    }
+
+    public static class Rooms {
+        private int count = 100;
+
+        /**
+         * @return the number of rooms of the hotel, numbered from 1
+         */
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+    }
+
+    public static class Async {
+        private boolean enabled = false;
+        private int corePoolSize = 16;
+        private int maxPoolSize = 64;
+        private int queueCapacity = 1000;
+        private long timeoutMillis = 10_000;
+
+        /**
+         * @return whether the reservation endpoints run on the reservation executor instead of the servlet threads
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getCorePoolSize() {
+            return corePoolSize;
+        }
+
+        public void setCorePoolSize(int corePoolSize) {
+            this.corePoolSize = corePoolSize;
+        }
+
+        /**
+         * @return the number of threads the executor grows to once its queue is full
+         */
+        public int getMaxPoolSize() {
+            return maxPoolSize;
+        }
+
+        public void setMaxPoolSize(int maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+        }
+
+        /**
+         * @return the number of requests waiting for a thread beyond which requests are rejected
+         */
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        /**
+         * @return the time after which a request still waiting for its response is answered 503 (Service Unavailable)
+         */
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        public void setTimeoutMillis(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+    }
+
+    public static class Replicas {
+        public enum Selection {
+            ROUND_ROBIN, RANDOM
+        }
+
+        private boolean enabled = false;
+        private List<String> urls = new ArrayList<>();
+        private String username;
+        private String password;
+        private Selection selection = Selection.ROUND_ROBIN;
+        private long healthCheckIntervalMillis = 5_000;
+
+        /**
+         * @return whether read-only transactions are routed to the replicas
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the JDBC URLs of the replicas, using the driver of the primary datasource
+         */
+        public List<String> getUrls() {
+            return urls;
+        }
+
+        public void setUrls(List<String> urls) {
+            this.urls = urls;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        /**
+         * @return how the replica of a read-only transaction is chosen among the healthy ones
+         */
+        public Selection getSelection() {
+            return selection;
+        }
+
+        public void setSelection(Selection selection) {
+            this.selection = selection;
+        }
+
+        public long getHealthCheckIntervalMillis() {
+            return healthCheckIntervalMillis;
+        }
+
+        public void setHealthCheckIntervalMillis(long healthCheckIntervalMillis) {
+            this.healthCheckIntervalMillis = healthCheckIntervalMillis;
+        }
+    }
+
+    public static class GroupCommit {
+        private boolean enabled = false;
+        private int maxBatchSize = 100;
+        private long maxWaitMillis = 5;
+        private int queueCapacity = 10_000;
+        private long timeoutMillis = 10_000;
+
+        /**
+         * @return whether created reservations are queued and saved in batches, one transaction per batch
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        /**
+         * @return how long the first reservation of a batch waits for others to join it
+         */
+        public long getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        public void setMaxWaitMillis(long maxWaitMillis) {
+            this.maxWaitMillis = maxWaitMillis;
+        }
+
+        /**
+         * @return the number of queued reservations beyond which reservations are rejected
+         */
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        /**
+         * @return how long a request waits for its batch to start committing before its reservation is withdrawn
+         */
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        public void setTimeoutMillis(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+    }
+
+    public static class Locking {
+        private int stripes = 256;
+        private long timeoutMillis = 5_000;
+        private boolean database = false;
+
+        /**
+         * @return the number of locks the rooms are spread over, rooms whose numbers differ by less than it never
+         * sharing a lock
+         */
+        public int getStripes() {
+            return stripes;
+        }
+
+        public void setStripes(int stripes) {
+            this.stripes = stripes;
+        }
+
+        /**
+         * @return how long a booking waits for its room to be unlocked by another transaction
+         */
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        public void setTimeoutMillis(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        /**
+         * @return whether bookings also lock the row of their room in the database, serializing them across nodes
+         */
+        public boolean isDatabase() {
+            return database;
+        }
+
+        public void setDatabase(boolean database) {
+            this.database = database;
+        }
+    }
+
+    public static class Archive {
+        private boolean enabled = false;
+        private int horizonDays = 365;
+        private int batchSize = 1000;
+        private long intervalMillis = 3_600_000;
+
+        /**
+         * @return whether the old reservations are moved to the archive periodically
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the number of days after the end of its stay a reservation is archived
+         */
+        public int getHorizonDays() {
+            return horizonDays;
+        }
+
+        public void setHorizonDays(int horizonDays) {
+            this.horizonDays = horizonDays;
+        }
+
+        /**
+         * @return the number of reservations moved in one transaction
+         */
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getIntervalMillis() {
+            return intervalMillis;
+        }
+
+        public void setIntervalMillis(long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+        }
+    }
+
+    public static class Changes {
+        private int capacity = 10_000;
+        private long pollTimeoutMillis = 30_000;
+
+        /**
+         * @return the number of latest changes kept in memory for the consumers of the change feed
+         */
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * @return how long a poll of the change feed waits for a change before being answered with none
+         */
+        public long getPollTimeoutMillis() {
+            return pollTimeoutMillis;
+        }
+
+        public void setPollTimeoutMillis(long pollTimeoutMillis) {
+            this.pollTimeoutMillis = pollTimeoutMillis;
+        }
+    }
+
+    public static class Shards {
+        private boolean enabled = false;
+        private List<String> urls = new ArrayList<>();
+        private Map<Integer, Integer> hotels = new HashMap<>();
+        private String username;
+        private String password;
+
+        /**
+         * @return whether the reservations are spread over the shard databases by hotel
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the JDBC URLs of the shards 1 to n, using the driver of the primary datasource, which is shard 0
+         */
+        public List<String> getUrls() {
+            return urls;
+        }
+
+        public void setUrls(List<String> urls) {
+            this.urls = urls;
+        }
+
+        /**
+         * @return the shard of each hotel, by hotel id; the hotels missing from it are on shard 0
+         */
+        public Map<Integer, Integer> getHotels() {
+            return hotels;
+        }
+
+        public void setHotels(Map<Integer, Integer> hotels) {
+            this.hotels = hotels;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+}
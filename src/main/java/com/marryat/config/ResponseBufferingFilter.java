@@ -0,0 +1,212 @@
+package com.marryat.config;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * Buffers the responses so that they are sent with their Content-Length. The message converters flush the responses
+ * they write, which commits them before their length is known, and the container then compresses them whatever their
+ * size; with a length, only the responses over the minimum compression size are compressed.
+ * <p>
+ * Only the first bytes of a response, up to the minimum compression size, are buffered: a response growing past it is
+ * going to be compressed anyway, so its buffered bytes are written out and the rest streamed, and memory use doesn't
+ * grow with the size of the responses. Streamed responses, requested with {@code stream=true} or exported from
+ * {@value #EXPORT_PATH}, are not buffered at all, and neither are the responses written with a {@link WriteListener}:
+ * their buffered bytes are written out when the listener is set, and the container takes over from then on.
+ */
+public class ResponseBufferingFilter extends OncePerRequestFilter {
+    static final String STREAM_PARAMETER = "stream";
+    static final String EXPORT_PATH = "/reservations/export";
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+    private final int bufferSize;
+
+    /**
+     * @param bufferSize the number of bytes buffered at most per response, the minimum compression size
+     */
+    public ResponseBufferingFilter(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (Boolean.parseBoolean(request.getParameter(STREAM_PARAMETER))
+                || EXPORT_PATH.equals(urlPathHelper.getPathWithinApplication(request))) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        HttpServletResponse responseToUse = response;
+        if (!isAsyncDispatch(request) && !(response instanceof BufferingResponse)) {
+            responseToUse = new BufferingResponse(response, bufferSize);
+        }
+        filterChain.doFilter(request, responseToUse);
+        // An async request is written by its async dispatch, which gets the same wrapper
+        if (!isAsyncStarted(request) && responseToUse instanceof BufferingResponse) {
+            ((BufferingResponse) responseToUse).complete();
+        }
+    }
+
+    /**
+     * Response holding back its body, and the flushes of its body, until it is complete or larger than the buffer.
+     */
+    private static final class BufferingResponse extends HttpServletResponseWrapper {
+        private final int bufferSize;
+        private final ByteArrayOutputStream buffer;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+        private boolean streaming;
+
+        private BufferingResponse(HttpServletResponse response, int bufferSize) {
+            super(response);
+            this.bufferSize = bufferSize;
+            this.buffer = new ByteArrayOutputStream(Math.min(bufferSize, 1024));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (outputStream == null) {
+                outputStream = new BufferingOutputStream();
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (streaming) {
+                super.flushBuffer();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            buffer.reset();
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            buffer.reset();
+            super.reset();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            startStreaming();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            startStreaming();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            startStreaming();
+            super.sendRedirect(location);
+        }
+
+        /**
+         * Send the buffered body with its length, unless it is already being streamed.
+         */
+        private void complete() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (streaming) {
+                return;
+            }
+            if (buffer.size() > 0 && !isCommitted()) {
+                setContentLength(buffer.size());
+            }
+            startStreaming();
+        }
+
+        private void startStreaming() throws IOException {
+            if (streaming) {
+                return;
+            }
+            streaming = true;
+            if (buffer.size() > 0) {
+                buffer.writeTo(getResponse().getOutputStream());
+                buffer.reset();
+            }
+        }
+
+        private final class BufferingOutputStream extends ServletOutputStream {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (!streaming && buffer.size() + len > bufferSize) {
+                    startStreaming();
+                }
+                if (streaming) {
+                    getResponse().getOutputStream().write(b, off, len);
+                } else {
+                    buffer.write(b, off, len);
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (streaming) {
+                    getResponse().getOutputStream().flush();
+                }
+            }
+
+            @Override
+            public boolean isReady() {
+                if (!streaming) {
+                    return true;
+                }
+                try {
+                    return getResponse().getOutputStream().isReady();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                try {
+                    startStreaming();
+                    getResponse().getOutputStream().setWriteListener(writeListener);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+}
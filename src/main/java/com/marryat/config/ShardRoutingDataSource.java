@@ -0,0 +1,44 @@
+package com.marryat.config;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Datasource sending every connection to the shard of the calling thread or transaction, as told by
+ * {@link HotelShards#currentShard()}.
+ * <p>
+ * A transaction has to be bound to its shard when the connection is requested, so the datasource is meant to be
+ * wrapped in a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which only requests it on
+ * the first statement.
+ */
+public class ShardRoutingDataSource extends AbstractDataSource {
+
+    private final Map<Integer, DataSource> shards;
+
+    public ShardRoutingDataSource(Map<Integer, DataSource> shards) {
+        this.shards = shards;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return currentShard().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return currentShard().getConnection(username, password);
+    }
+
+    private DataSource currentShard() {
+        int shard = HotelShards.currentShard();
+        DataSource dataSource = shards.get(shard);
+        if (dataSource == null) {
+            throw new IllegalStateException("Unknown shard " + shard);
+        }
+        return dataSource;
+    }
+}
@@ -0,0 +1,114 @@
+package com.marryat.config;
+
+import com.marryat.domain.Reservation;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.boot.spi.MetadataImplementor;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.tool.hbm2ddl.SchemaExport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceBuilder;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.Entity;
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration of the hotel shards, enabled by "reservations.shards.enabled": the reservations of every hotel are
+ * stored in the database of its shard, shard 0 being the "spring.datasource" primary and shards 1 to n the databases
+ * at "reservations.shards.urls". Read replicas can't be enabled along with the shards.
+ * <p>
+ * Hibernate only creates the schema of shard 0, so when the schema is generated ("create" or "create-drop"), the
+ * schema of the other shards is created here, and the id sequence of shard n restarted at the first id of its block.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "reservations.shards", name = "enabled", havingValue = "true")
+public class ShardingConfig {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardingConfig.class);
+
+    private final DataSourceProperties dataSourceProperties;
+    private final JpaProperties jpaProperties;
+    private final ReservationProperties properties;
+    private final Map<Integer, DataSource> shards = new LinkedHashMap<>();
+
+    @Autowired
+    public ShardingConfig(DataSourceProperties dataSourceProperties, JpaProperties jpaProperties,
+                          ReservationProperties properties) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.jpaProperties = jpaProperties;
+        this.properties = properties;
+    }
+
+    /**
+     * The shard pools aren't beans of their own, so that the datasource initialization of Spring Boot only sees the
+     * routing datasource.
+     */
+    @Bean
+    public DataSource dataSource() {
+        if (properties.getReplicas().isEnabled()) {
+            throw new IllegalStateException("Read replicas can't be enabled along with the hotel shards");
+        }
+        ReservationProperties.Shards config = properties.getShards();
+        shards.put(HotelShards.PRIMARY_SHARD, dataSourceProperties.initializeDataSourceBuilder().build());
+        List<String> urls = config.getUrls();
+        for (int shard = 1; shard <= urls.size(); shard++) {
+            DataSource dataSource = DataSourceBuilder.create()
+                    .driverClassName(dataSourceProperties.determineDriverClassName())
+                    .url(urls.get(shard - 1))
+                    .username(config.getUsername())
+                    .password(config.getPassword())
+                    .build();
+            shards.put(shard, dataSource);
+            createSchema(shard, dataSource);
+        }
+        return new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(shards));
+    }
+
+    private void createSchema(int shard, DataSource dataSource) {
+        Map<String, String> settings = jpaProperties.getHibernateProperties(dataSource);
+        String ddlAuto = settings.get(AvailableSettings.HBM2DDL_AUTO);
+        if (!"create".equals(ddlAuto) && !"create-drop".equals(ddlAuto)) {
+            return;
+        }
+        LOGGER.debug("Creating the schema of shard {}", shard);
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySettings(settings)
+                .applySetting(AvailableSettings.DATASOURCE, dataSource)
+                .build();
+        try {
+            MetadataSources sources = new MetadataSources(registry);
+            ClassPathScanningCandidateComponentProvider scanner =
+                    new ClassPathScanningCandidateComponentProvider(false);
+            scanner.addIncludeFilter(new AnnotationTypeFilter(Entity.class));
+            for (BeanDefinition entity : scanner.findCandidateComponents(Reservation.class.getPackage().getName())) {
+                sources.addAnnotatedClassName(entity.getBeanClassName());
+            }
+            new SchemaExport((MetadataImplementor) sources.buildMetadata()).create(false, true);
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+        new JdbcTemplate(dataSource).execute("alter sequence " + Reservation.ID_SEQUENCE + " restart with " +
+                (shard * HotelShards.ID_BLOCK + 1));
+    }
+
+    @PreDestroy
+    public void closeShards() {
+        shards.values().forEach(ReplicaSelector::closePool);
+    }
+}
@@ -0,0 +1,27 @@
+package com.marryat.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+
+/**
+ * Reads and writes the JSON model in Smile, the binary encoding of JSON, as {@code application/x-jackson-smile}.
+ * Repeated string values, like the names and dates of a list of reservations, are written once and then referenced.
+ */
+public class SmileHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    public SmileHttpMessageConverter() {
+        super(JacksonConfig.configure(new ObjectMapper(smileFactory())), APPLICATION_SMILE);
+        // Smile is binary, its content type has no charset
+        setDefaultCharset(null);
+    }
+
+    private static SmileFactory smileFactory() {
+        SmileFactory factory = new SmileFactory();
+        factory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        return factory;
+    }
+}
@@ -0,0 +1,274 @@
+package com.marryat.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marryat.config.AsyncConfig;
+import com.marryat.config.ReservationProperties;
+import com.marryat.domain.Reservation;
+import com.marryat.service.BatchItemResult;
+import com.marryat.service.GroupCommitWriter;
+import com.marryat.service.ImportSummary;
+import com.marryat.service.ReservationConflictException;
+import com.marryat.service.ReservationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.marryat.controller.ReservationController.DATE_FORMAT;
+import static com.marryat.controller.ReservationController.DEFAULT_HOTEL_ID;
+import static com.marryat.controller.ReservationController.DEFAULT_PAGE_SIZE;
+import static org.springframework.http.ResponseEntity.ok;
+
+/**
+ * The reservation endpoints in async mode: each request is handed over to the reservation executor, which runs the
+ * same logic as {@link ReservationController}, and its servlet thread is released while the database is queried.
+ * Requests are answered 503 (Service Unavailable) when the executor queue is full or when their response isn't
+ * ready within the async timeout.
+ */
+@RestController
+@ConditionalOnProperty(prefix = "reservations.async", name = "enabled", havingValue = "true")
+public class AsyncReservationController {
+    private final Logger log = LoggerFactory.getLogger(AsyncReservationController.class);
+
+    private final ReservationController delegate;
+    private final Executor executor;
+
+    @Autowired
+    public AsyncReservationController(ReservationService reservationService, ObjectMapper objectMapper,
+                                      Validator validator, @Qualifier(AsyncConfig.EXECUTOR_BEAN) Executor executor,
+                                      Optional<GroupCommitWriter> groupCommitWriter, ReservationProperties properties) {
+        this.delegate = new ReservationController(reservationService, objectMapper, validator, groupCommitWriter,
+                properties);
+        this.executor = executor;
+    }
+
+    /**
+     * POST  /reservations : Create a new reservation.
+     *
+     * @see ReservationController#createReservation(Reservation)
+     */
+    @PostMapping("/reservations")
+    public CompletableFuture<ResponseEntity<Reservation>> createReservation(
+            @Valid @RequestBody Reservation reservation) {
+        return async(() -> delegate.createReservation(reservation));
+    }
+
+    /**
+     * POST  /reservations/batch : Create or update reservations in one transaction per shard of their hotels.
+     *
+     * @see ReservationController#saveReservations(List)
+     */
+    @PostMapping("/reservations/batch")
+    public CompletableFuture<ResponseEntity<List<BatchItemResult>>> saveReservations(
+            @RequestBody List<Reservation> reservations) {
+        return async(() -> delegate.saveReservations(reservations));
+    }
+
+    /**
+     * POST  /reservations/import : Create the reservations of an NDJSON or CSV body. The import runs on the servlet
+     * thread, as it reads the body while saving the reservations and may last longer than the async timeout.
+     *
+     * @see ReservationController#importReservations(InputStream, MediaType)
+     */
+    @PostMapping(value = "/reservations/import", consumes = {ReservationLineReader.APPLICATION_NDJSON_VALUE,
+            ReservationLineReader.TEXT_CSV_VALUE})
+    public ResponseEntity<ImportSummary> importReservations(InputStream body,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType) throws IOException {
+        return delegate.importReservations(body, contentType);
+    }
+
+    /**
+     * PUT  /reservations : Updates an existing reservation.
+     *
+     * @see ReservationController#updateReservation(Reservation, String)
+     */
+    @PutMapping("/reservations")
+    public CompletableFuture<ResponseEntity<Reservation>> updateReservation(
+            @Valid @RequestBody Reservation reservation,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return async(() -> delegate.updateReservation(reservation, ifMatch));
+    }
+
+    /**
+     * GET  /reservations/:id : get the "id" reservation.
+     *
+     * @see ReservationController#getReservation(Long, Integer)
+     */
+    @GetMapping("/reservations/{id}")
+    public CompletableFuture<ResponseEntity<Reservation>> getReservation(@PathVariable Long id,
+            @RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId) {
+        return async(() -> delegate.getReservation(id, hotelId));
+    }
+
+    /**
+     * DELETE  /reservations/:id : delete the "id" reservation.
+     *
+     * @see ReservationController#deleteReservation(Long, String, Integer)
+     */
+    @DeleteMapping("/reservations/{id}")
+    public CompletableFuture<ResponseEntity<Void>> deleteReservation(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId) {
+        return async(() -> delegate.deleteReservation(id, ifMatch, hotelId));
+    }
+
+    /**
+     * DELETE  /reservations?ids=1,2,3 : delete the reservations with the given ids, in one statement.
+     *
+     * @see ReservationController#deleteReservations(List, Integer)
+     */
+    @DeleteMapping(value = "/reservations", params = "ids")
+    public CompletableFuture<ResponseEntity<Integer>> deleteReservations(@RequestParam List<Long> ids,
+            @RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId) {
+        return async(() -> delegate.deleteReservations(ids, hotelId));
+    }
+
+    /**
+     * GET  /reservations : get all the reservations staying at least one day within the period.
+     *
+     * @see ReservationController#getReservations(LocalDate, LocalDate, Integer, Integer)
+     */
+    @GetMapping("/reservations")
+    public CompletableFuture<ResponseEntity<List<Reservation>>> getReservations(
+            @RequestParam @DateTimeFormat(pattern = DATE_FORMAT) LocalDate from,
+            @RequestParam @DateTimeFormat(pattern = DATE_FORMAT) LocalDate to,
+            @RequestParam(required = false) Integer roomNumber,
+            @RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId) {
+        return async(() -> delegate.getReservations(from, to, roomNumber, hotelId));
+    }
+
+    /**
+     * GET  /reservations/archive : get all the archived reservations staying at least one day within the period.
+     *
+     * @see ReservationController#getArchivedReservations(LocalDate, LocalDate, Integer, Integer)
+     */
+    @GetMapping("/reservations/archive")
+    public CompletableFuture<ResponseEntity<List<Reservation>>> getArchivedReservations(
+            @RequestParam @DateTimeFormat(pattern = DATE_FORMAT) LocalDate from,
+            @RequestParam @DateTimeFormat(pattern = DATE_FORMAT) LocalDate to,
+            @RequestParam(required = false) Integer roomNumber,
+            @RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId) {
+        return async(() -> delegate.getArchivedReservations(from, to, roomNumber, hotelId));
+    }
+
+    /**
+     * GET  /reservations/list : get a page of the reservations, ordered by id.
+     *
+     * @see ReservationController#listAllReservations(Long, int, Integer)
+     */
+    @GetMapping("/reservations/list")
+    public CompletableFuture<ResponseEntity<List<Reservation>>> listAllReservations(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId) {
+        return async(() -> delegate.listAllReservations(after, limit, hotelId));
+    }
+
+    /**
+     * GET  /reservations/list?stream=true : get all the reservations, written to the response by the reservation
+     * executor while they are read from a database cursor.
+     *
+     * @param hotelId the hotel of the reservations, {@value Reservation#DEFAULT_HOTEL_ID} if not specified
+     * @return the ResponseEntity with status 200 (OK) and the JSON array of reservations in body
+     */
+    @GetMapping(value = "/reservations/list", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllReservations(
+            @RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId) {
+        log.debug("REST request to stream all Reservations");
+        return ok().contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(outputStream -> delegate.writeAllReservations(hotelId, outputStream));
+    }
+
+    /**
+     * GET  /reservations/export : get the matching reservations as NDJSON. The export runs on the servlet thread, as
+     * it may last longer than the async timeout.
+     *
+     * @see ReservationController#exportReservations(LocalDate, LocalDate, Integer, boolean, Integer,
+     * HttpServletResponse)
+     */
+    @GetMapping("/reservations/export")
+    public void exportReservations(
+            @RequestParam(required = false) @DateTimeFormat(pattern = DATE_FORMAT) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = DATE_FORMAT) LocalDate to,
+            @RequestParam(required = false) Integer roomNumber,
+            @RequestParam(defaultValue = "false") boolean includeArchived,
+            @RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId,
+            HttpServletResponse response) throws IOException {
+        delegate.exportReservations(from, to, roomNumber, includeArchived, hotelId, response);
+    }
+
+    @ExceptionHandler(ReservationConflictException.class)
+    public ResponseEntity<Void> onConflict(ReservationConflictException e) {
+        return delegate.onConflict(e);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Void> onPreconditionFailed(OptimisticLockingFailureException e) {
+        return delegate.onPreconditionFailed(e);
+    }
+
+    @ExceptionHandler(PessimisticLockingFailureException.class)
+    public ResponseEntity<Void> onLockTimeout(PessimisticLockingFailureException e) {
+        return delegate.onLockTimeout(e);
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Void> onRejected(RejectedExecutionException e) {
+        return delegate.onRejected(e);
+    }
+
+    /**
+     * Run the call on the reservation executor. The returned future completes with the exception the call threw
+     * itself, so that it is handled like the one of a synchronous call, errors included so that the client isn't left
+     * waiting for the async timeout; errors are thrown again for the executor thread to die of.
+     */
+    private <T> CompletableFuture<T> async(Callable<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(call.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                    if (e instanceof Error) {
+                        throw (Error) e;
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
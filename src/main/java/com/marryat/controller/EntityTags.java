@@ -0,0 +1,66 @@
+package com.marryat.controller;
+
+import com.marryat.domain.Reservation;
+import org.springframework.util.DigestUtils;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Entity tags of reservations, derived from their versions so that a tag can be checked without serializing the
+ * reservations it stands for. The tags are weak: the same version is sent as JSON or Smile, and with or without some
+ * of its fields, and these representations are equivalent but not identical byte for byte.
+ */
+final class EntityTags {
+    private static final String ANY = "*";
+    private static final String WEAK = "W/";
+    private static final Long NO_VERSION = -1L;
+
+    private EntityTags() {
+    }
+
+    /**
+     * @return the weak entity tag of the reservation, its quoted version
+     */
+    static String of(Reservation reservation) {
+        return WEAK + "\"" + reservation.getVersion() + "\"";
+    }
+
+    /**
+     * @return the weak entity tag of a list of reservations, a digest of their ids and versions in order
+     */
+    static String of(List<Reservation> reservations) {
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Long.BYTES * reservations.size());
+        for (Reservation reservation : reservations) {
+            buffer.putLong(reservation.getId());
+            buffer.putLong(reservation.getVersion() == null ? NO_VERSION : reservation.getVersion());
+        }
+        return WEAK + "\"" + DigestUtils.md5DigestAsHex(buffer.array()) + "\"";
+    }
+
+    /**
+     * Parse the version out of an If-Match header. The tag is compared on the version it stands for, weak or not, as
+     * the tags sent are all weak.
+     *
+     * @param ifMatch the If-Match header value, a single entity tag
+     * @return the version, null if the header matches any version, or a version no reservation has if the header is
+     * not the entity tag of a reservation
+     */
+    static Long version(String ifMatch) {
+        String tag = ifMatch.trim();
+        if (ANY.equals(tag)) {
+            return null;
+        }
+        if (tag.startsWith(WEAK)) {
+            tag = tag.substring(WEAK.length());
+        }
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.valueOf(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException e) {
+                return NO_VERSION;
+            }
+        }
+        return NO_VERSION;
+    }
+}
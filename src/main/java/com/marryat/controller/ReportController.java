@@ -0,0 +1,62 @@
+package com.marryat.controller;
+
+import com.marryat.service.Occupancy;
+import com.marryat.service.ReservationService;
+import com.marryat.service.ScatterGather;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+
+import static com.marryat.controller.ReservationController.DATE_FORMAT;
+import static org.springframework.http.ResponseEntity.badRequest;
+import static org.springframework.http.ResponseEntity.ok;
+
+@RestController
+public class ReportController {
+    /**
+     * The longest range of a report, about ten years.
+     */
+    static final int MAX_REPORT_DAYS = 3660;
+
+    private final Logger log = LoggerFactory.getLogger(ReportController.class);
+
+    private final ReservationService reservationService;
+    private final ScatterGather scatterGather;
+
+    @Autowired
+    public ReportController(ReservationService reservationService, ScatterGather scatterGather) {
+        this.reservationService = reservationService;
+        this.scatterGather = scatterGather;
+    }
+
+    /**
+     * GET  /reports/occupancy : get the number of rooms booked on every day of the period, in one hotel or in all of
+     * them.
+     *
+     * @param from    the first day of the period
+     * @param to      the last day of the period
+     * @param hotelId the hotel, or none for all the hotels of all the shards
+     * @return the ResponseEntity with status 200 (OK) and the occupancy in body, the rooms counts being in day order
+     * from the first day, or with status 400 (Bad Request) if the period ends before it starts or is longer than
+     * {@value #MAX_REPORT_DAYS} days
+     */
+    @GetMapping("/reports/occupancy")
+    public ResponseEntity<Occupancy> getOccupancy(
+            @RequestParam @DateTimeFormat(pattern = DATE_FORMAT) LocalDate from,
+            @RequestParam @DateTimeFormat(pattern = DATE_FORMAT) LocalDate to,
+            @RequestParam(required = false) Integer hotelId) {
+        log.debug("REST request to get occupancy of hotel {} from {} to {}", hotelId, from, to);
+        if (from.isAfter(to) || to.isAfter(from.plusDays(MAX_REPORT_DAYS - 1))) {
+            return badRequest().body(null);
+        }
+        return ok().body(hotelId == null ? scatterGather.countOccupancy(from, to)
+                : reservationService.countOccupancy(hotelId, from, to));
+    }
+}
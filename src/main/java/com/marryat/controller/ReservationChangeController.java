@@ -0,0 +1,92 @@
+package com.marryat.controller;
+
+import com.marryat.config.ReservationProperties;
+import com.marryat.service.ReservationChange;
+import com.marryat.service.ReservationChangeLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.marryat.controller.ReservationController.DEFAULT_PAGE_SIZE;
+import static com.marryat.controller.ReservationController.MAX_PAGE_SIZE;
+import static com.marryat.controller.ReservationController.NEXT_CURSOR_HEADER;
+import static org.springframework.http.ResponseEntity.badRequest;
+import static org.springframework.http.ResponseEntity.ok;
+
+/**
+ * The change feed of the reservations, long-polled by the consumers keeping a copy of them: a poll is answered as soon
+ * as there are changes after its cursor, without holding a servlet thread while it waits for them.
+ */
+@RestController
+public class ReservationChangeController {
+    private final Logger log = LoggerFactory.getLogger(ReservationChangeController.class);
+
+    private final ReservationChangeLog changeLog;
+    private final long pollTimeoutMillis;
+
+    @Autowired
+    public ReservationChangeController(ReservationChangeLog changeLog, ReservationProperties properties) {
+        this.changeLog = changeLog;
+        this.pollTimeoutMillis = properties.getChanges().getPollTimeoutMillis();
+    }
+
+    /**
+     * GET  /reservations/changes : get the changes of the reservations committed after the cursor, waiting for the
+     * next ones if there is none yet. Without cursor, no change is returned, only the cursor of the latest one: a
+     * consumer gets it before reading all the reservations, and polls the changes after it from then on.
+     *
+     * @param since the sequence of the latest change the consumer got
+     * @param limit the maximum number of changes
+     * @return the ResponseEntity with status 200 (OK) and the list of changes in body, oldest first, empty if none
+     * was committed within the poll timeout, the X-Next-Cursor header holding the `since` value of the next poll, or
+     * with status 400 (Bad Request) if the limit is not between 1 and 1000, or with status 410 (Gone) if changes
+     * after the cursor are no longer kept, in which case the consumer has to read all the reservations again
+     */
+    @GetMapping("/reservations/changes")
+    public DeferredResult<ResponseEntity<List<ReservationChange>>> getChanges(
+            @RequestParam(required = false) Long since,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        log.debug("REST request to get changes of Reservations since : {}", since);
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return completed(badRequest().body(null));
+        }
+        if (since == null) {
+            return completed(changes(Collections.emptyList(), changeLog.getLastSequence()));
+        }
+        DeferredResult<ResponseEntity<List<ReservationChange>>> result =
+                new DeferredResult<>(pollTimeoutMillis, changes(Collections.emptyList(), since));
+        Runnable poll = () -> {
+            if (!changeLog.isKept(since)) {
+                result.setResult(ResponseEntity.status(HttpStatus.GONE).body(null));
+                return;
+            }
+            List<ReservationChange> changes = changeLog.findAfter(since, limit);
+            if (!changes.isEmpty()) {
+                result.setResult(changes(changes, changes.get(changes.size() - 1).getSequence()));
+            }
+        };
+        changeLog.addListener(poll);
+        result.onCompletion(() -> changeLog.removeListener(poll));
+        poll.run();
+        return result;
+    }
+
+    private static ResponseEntity<List<ReservationChange>> changes(List<ReservationChange> changes, long cursor) {
+        return ok().header(NEXT_CURSOR_HEADER, String.valueOf(cursor)).body(changes);
+    }
+
+    private static <T> DeferredResult<T> completed(T value) {
+        DeferredResult<T> result = new DeferredResult<>();
+        result.setResult(value);
+        return result;
+    }
+}
@@ -1,43 +1,94 @@
 package com.marryat.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marryat.config.ReservationProperties;
 import com.marryat.domain.Reservation;
+import com.marryat.service.BatchItemResult;
+import com.marryat.service.GroupCommitWriter;
+import com.marryat.service.ImportSummary;
+import com.marryat.service.ReservationConflictException;
 import com.marryat.service.ReservationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
 
 import static org.springframework.http.ResponseEntity.badRequest;
 import static org.springframework.http.ResponseEntity.notFound;
 import static org.springframework.http.ResponseEntity.ok;
 
+/**
+ * The reservation endpoints, run on the servlet threads unless the async mode is enabled, in which case
+ * {@link AsyncReservationController} serves them instead.
+ */
 @RestController
+@ConditionalOnProperty(prefix = "reservations.async", name = "enabled", havingValue = "false", matchIfMissing = true)
 public class ReservationController {
     public static final String DATE_FORMAT = "yyyy-MM-dd";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_BATCH_SIZE = 1000;
+    public static final String DEFAULT_HOTEL_ID = "" + Reservation.DEFAULT_HOTEL_ID;
     private final Logger log = LoggerFactory.getLogger(ReservationController.class);
 
     private final ReservationService reservationService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final Optional<GroupCommitWriter> groupCommitWriter;
+    private final int roomCount;
 
+    /**
+     * @param groupCommitWriter the writer new reservations go through when group commit is enabled
+     */
     @Autowired
-    public ReservationController(ReservationService reservationService) {
+    public ReservationController(ReservationService reservationService, ObjectMapper objectMapper,
+                                 Validator validator, Optional<GroupCommitWriter> groupCommitWriter,
+                                 ReservationProperties properties) {
         this.reservationService = reservationService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.groupCommitWriter = groupCommitWriter;
+        this.roomCount = properties.getRooms().getCount();
     }
 
     /**
@@ -45,98 +96,417 @@ public class ReservationController {
      *
      * @param reservation the reservation to save
      * @return the ResponseEntity with status 201 (Created) and with body the new reservation, or with status 400
-     * (Bad Request) if the reservation has already an ID
+     * (Bad Request) if the reservation has already an ID, its room is not one of the hotel or its stay is longer than
+     * {@value Reservation#MAX_STAY_DAYS} days, or with status 409 (Conflict) if the room is already booked,
+     * or with status 503 (Service Unavailable) if the group commit queue is full
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
     @PostMapping("/reservations")
     public ResponseEntity<Reservation> createReservation(@Valid @RequestBody Reservation reservation) throws
             URISyntaxException {
         log.debug("REST request to save Reservation : {}", reservation);
-        if (reservation.getId() != null) {
+        if (reservation.getId() != null || checkBounds(reservation) != null) {
             return ResponseEntity.badRequest().body(null);
         }
-        Reservation result = reservationService.save(reservation);
-        return datesValid(reservation.getStartDate(), reservation.getEndDate()) ?
-                ResponseEntity.created(new URI("/reservations/" + result.getId())).body(result) : badRequest().build();
+        Reservation result = groupCommitWriter.isPresent() ? groupCommitWriter.get().save(reservation) :
+                reservationService.save(reservation);
+        return ResponseEntity.created(new URI("/reservations/" + result.getId())).body(result);
+    }
+
+    /**
+     * POST  /reservations/batch : Create or update reservations in one transaction per shard of their hotels.
+     *
+     * @param reservations the reservations to save, created when they have no ID and updated otherwise
+     * @return the ResponseEntity with status 200 (OK) and with body the result of every reservation, the ones
+     * overlapping another booking being skipped, or with status 400 (Bad Request) and with body the results of the
+     * invalid reservations if any reservation is not valid, in which case none is saved
+     */
+    @PostMapping("/reservations/batch")
+    public ResponseEntity<List<BatchItemResult>> saveReservations(@RequestBody List<Reservation> reservations) {
+        log.debug("REST request to save {} Reservations", reservations.size());
+        if (reservations.isEmpty() || reservations.size() > MAX_BATCH_SIZE) {
+            return badRequest().body(null);
+        }
+        List<BatchItemResult> invalid = new ArrayList<>();
+        for (int i = 0; i < reservations.size(); i++) {
+            String error = validate(reservations.get(i));
+            if (error != null) {
+                invalid.add(BatchItemResult.invalid(i, error));
+            }
+        }
+        return invalid.isEmpty() ? ok().body(saveByShard(reservations)) : badRequest().body(invalid);
+    }
+
+    /**
+     * POST  /reservations/import : Create the reservations of an NDJSON or CSV body, one reservation per line. The
+     * body is read while the reservations are saved, in transactions of {@value #MAX_BATCH_SIZE} reservations, so
+     * memory use doesn't depend on its size. Ids and versions in the body are ignored.
+     *
+     * @param body        the body
+     * @param contentType application/x-ndjson, or text/csv with a header line naming the columns
+     * @return the ResponseEntity with status 200 (OK) and with body the summary of the import, the invalid and
+     * overlapping reservations being skipped and reported by line number
+     * @throws IOException if the body can't be read
+     */
+    @PostMapping(value = "/reservations/import", consumes = {ReservationLineReader.APPLICATION_NDJSON_VALUE,
+            ReservationLineReader.TEXT_CSV_VALUE})
+    public ResponseEntity<ImportSummary> importReservations(InputStream body,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType) throws IOException {
+        log.debug("REST request to import Reservations from {}", contentType);
+        ReservationLineReader reader = new ReservationLineReader(body, contentType, objectMapper);
+        ImportSummary summary = new ImportSummary();
+        List<Reservation> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        List<Integer> lineNumbers = new ArrayList<>(MAX_BATCH_SIZE);
+        for (ReservationLineReader.Line line = reader.next(); line != null; line = reader.next()) {
+            String error = line.getError() != null ? line.getError() : validate(line.getReservation());
+            if (error != null) {
+                summary.add(BatchItemResult.invalid(line.getNumber(), error));
+                continue;
+            }
+            line.getReservation().setId(null);
+            line.getReservation().setVersion(null);
+            batch.add(line.getReservation());
+            lineNumbers.add(line.getNumber());
+            if (batch.size() == MAX_BATCH_SIZE) {
+                importBatch(batch, lineNumbers, summary);
+            }
+        }
+        importBatch(batch, lineNumbers, summary);
+        log.debug("Imported Reservations : {}", summary);
+        return ok().body(summary);
     }
 
     /**
      * PUT  /reservations : Updates an existing reservation.
      *
-     * @param reservation the reservation to update
+     * @param reservation the reservation to update, only applied to its version if it has one
+     * @param ifMatch     the entity tag of the version to update, taking precedence over the version of the body
      * @return the ResponseEntity with status 200 (OK) and with body the updated reservation,
-     * or with status 400 (Bad Request) if the reservation is not valid,
+     * or with status 400 (Bad Request) if the reservation is not valid, or out of the room inventory or stay bounds,
+     * or with status 409 (Conflict) if the room is already booked,
+     * or with status 412 (Precondition Failed) if the reservation is at another version,
      * or with status 500 (Internal Server Error) if the reservation couldnt be updated
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
     @PutMapping("/reservations")
-    public ResponseEntity<Reservation> updateReservation(@Valid @RequestBody Reservation reservation) throws
+    public ResponseEntity<Reservation> updateReservation(@Valid @RequestBody Reservation reservation,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws
             URISyntaxException {
         if (reservation.getId() == null) {
             return createReservation(reservation);
         }
         log.debug("REST request to update Reservation : {}", reservation);
-        return datesValid(reservation.getStartDate(), reservation.getEndDate()) ?
-                ok().body(reservationService.save(reservation)) : badRequest().build();
+        if (checkBounds(reservation) != null) {
+            return badRequest().build();
+        }
+        if (ifMatch != null) {
+            reservation.setVersion(EntityTags.version(ifMatch));
+        }
+        Reservation result = reservationService.save(reservation);
+        return ok().eTag(EntityTags.of(result)).body(result);
     }
 
     /**
      * GET  /reservations/:id : get the "id" reservation.
      *
-     * @param id the id of the reservation to retrieve
-     * @return the ResponseEntity with status 200 (OK) and with body the reservation, or with status 404 (Not Found)
+     * @param id      the id of the reservation to retrieve
+     * @param hotelId the hotel of the reservations, {@value Reservation#DEFAULT_HOTEL_ID} if not specified
+     * @return the ResponseEntity with status 200 (OK) and with body the reservation and its version as ETag, or with
+     * status 304 (Not Modified) if it matches the If-None-Match header, or with status 404 (Not Found)
      */
     @GetMapping("/reservations/{id}")
 
-    public ResponseEntity<Reservation> getReservation(@PathVariable Long id) {
+    public ResponseEntity<Reservation> getReservation(@PathVariable Long id,
+            @RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId) {
         log.debug("REST request to get Reservation : {}", id);
-        return wrapOrNotFound(Optional.ofNullable(reservationService.findOne(id)));
+        return wrapOrNotFound(Optional.ofNullable(reservationService.findOne(hotelId, id)));
     }
 
     /**
      * DELETE  /reservations/:id : delete the "id" reservation.
      *
-     * @param id the id of the reservation to delete
-     * @return the ResponseEntity with status 200 (OK) or with status 404 (Not Found)
+     * @param id      the id of the reservation to delete
+     * @param ifMatch the entity tag of the version to delete, any version if not specified
+     * @param hotelId the hotel of the reservations, {@value Reservation#DEFAULT_HOTEL_ID} if not specified
+     * @return the ResponseEntity with status 200 (OK), or with status 404 (Not Found), or with status 412
+     * (Precondition Failed) if the reservation is at another version
      */
     @DeleteMapping("/reservations/{id}")
 
-    public ResponseEntity<Void> deleteReservation(@PathVariable Long id) {
+    public ResponseEntity<Void> deleteReservation(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId) {
         log.debug("REST request to delete Reservation : {}", id);
-        return reservationService.delete(id) ? ok().build() : notFound().build();
+        Long version = ifMatch == null ? null : EntityTags.version(ifMatch);
+        boolean deleted = version == null ? reservationService.delete(hotelId, id) :
+                reservationService.delete(hotelId, id, version);
+        return deleted ? ok().build() : notFound().build();
     }
 
     /**
-     * GET  /reservations : get all the reservations with start date within the period.
+     * DELETE  /reservations?ids=1,2,3 : delete the reservations with the given ids, in one statement.
      *
-     * @param from the date the startDate should be later or equal to
-     * @param to   the date the startDate should be earlier or equal to
-     * @return the ResponseEntity with status 200 (OK) and the list of reservations in body
+     * @param ids     the ids of the reservations to delete, unknown ones and the ones of other hotels being ignored
+     * @param hotelId the hotel of the reservations, {@value Reservation#DEFAULT_HOTEL_ID} if not specified
+     * @return the ResponseEntity with status 200 (OK) and with body the number of deleted reservations, or with status
+     * 400 (Bad Request) if there are no ids or more than the batch size
+     */
+    @DeleteMapping(value = "/reservations", params = "ids")
+    public ResponseEntity<Integer> deleteReservations(@RequestParam List<Long> ids,
+            @RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId) {
+        log.debug("REST request to delete {} Reservations", ids.size());
+        if (ids.isEmpty() || ids.size() > MAX_BATCH_SIZE) {
+            return badRequest().body(null);
+        }
+        return ok().body(reservationService.delete(hotelId, ids));
+    }
+
+    /**
+     * GET  /reservations : get all the reservations staying at least one day within the period.
+     *
+     * @param from       the date the endDate should be later or equal to
+     * @param to         the date the startDate should be earlier or equal to
+     * @param roomNumber the room of the reservations, all rooms if not specified
+     * @param hotelId    the hotel of the reservations, {@value Reservation#DEFAULT_HOTEL_ID} if not specified
+     * @return the ResponseEntity with status 200 (OK) and the list of reservations in body, or with status 304 (Not
+     * Modified) if the list matches the If-None-Match header
      */
     @GetMapping("/reservations")
     public ResponseEntity<List<Reservation>> getReservations(
             @RequestParam @DateTimeFormat(pattern = DATE_FORMAT) LocalDate from,
-            @RequestParam @DateTimeFormat(pattern = DATE_FORMAT) LocalDate to) {
+            @RequestParam @DateTimeFormat(pattern = DATE_FORMAT) LocalDate to,
+            @RequestParam(required = false) Integer roomNumber,
+            @RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId) {
+
+        if (!datesValid(from, to)) {
+            return badRequest().body(null);
+        }
+        List<Reservation> reservations = roomNumber == null ?
+                reservationService.findReservationsByDateRange(hotelId, from, to) :
+                reservationService.findReservationsByDateRange(hotelId, roomNumber, from, to);
+        return ResponseEntity.ok().eTag(EntityTags.of(reservations)).body(reservations);
+    }
 
-        return datesValid(from, to) ? ResponseEntity.ok().body(reservationService.findReservationsByDateRange
-                (from, to)) : badRequest().body(null);
+    /**
+     * GET  /reservations/archive : get all the archived reservations staying at least one day within the period.
+     *
+     * @param from       the date the endDate should be later or equal to
+     * @param to         the date the startDate should be earlier or equal to
+     * @param roomNumber the room of the reservations, all rooms if not specified
+     * @param hotelId    the hotel of the reservations, {@value Reservation#DEFAULT_HOTEL_ID} if not specified
+     * @return the ResponseEntity with status 200 (OK) and the list of archived reservations in body, or with status 304
+     * (Not Modified) if the list matches the If-None-Match header
+     */
+    @GetMapping("/reservations/archive")
+    public ResponseEntity<List<Reservation>> getArchivedReservations(
+            @RequestParam @DateTimeFormat(pattern = DATE_FORMAT) LocalDate from,
+            @RequestParam @DateTimeFormat(pattern = DATE_FORMAT) LocalDate to,
+            @RequestParam(required = false) Integer roomNumber,
+            @RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId) {
+        log.debug("REST request to get archived Reservations from {} to {}", from, to);
+        if (!datesValid(from, to)) {
+            return badRequest().body(null);
+        }
+        List<Reservation> reservations = roomNumber == null ?
+                reservationService.findArchivedReservationsByDateRange(hotelId, from, to) :
+                reservationService.findArchivedReservationsByDateRange(hotelId, roomNumber, from, to);
+        return ResponseEntity.ok().eTag(EntityTags.of(reservations)).body(reservations);
     }
 
     /**
-     * GET  /reservations/list : get all the reservations.
+     * GET  /reservations/list : get a page of the reservations, ordered by id.
      *
-     * @return the ResponseEntity with status 200 (OK) and the list of reservations in body
+     * @param after   the id of the last reservation of the previous page, the value of its X-Next-Cursor header
+     * @param limit   the maximum number of reservations in the page
+     * @param hotelId the hotel of the reservations, {@value Reservation#DEFAULT_HOTEL_ID} if not specified
+     * @return the ResponseEntity with status 200 (OK) and the list of reservations in body, with the X-Next-Cursor
+     * header if there may be more reservations, or with status 304 (Not Modified) if the page matches the
+     * If-None-Match header, or with status 400 (Bad Request) if the limit is out of range
      */
     @GetMapping("/reservations/list")
-    public ResponseEntity<List<Reservation>> listAllReservations() {
-        return wrapOrNotFound(Optional.ofNullable(reservationService.findAll()));
+    public ResponseEntity<List<Reservation>> listAllReservations(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId) {
+        log.debug("REST request to get {} Reservations after : {}", limit, after);
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return badRequest().body(null);
+        }
+        List<Reservation> page = reservationService.findAfter(hotelId, after, limit);
+        ResponseEntity.BodyBuilder response = ok().eTag(EntityTags.of(page));
+        if (page.size() == limit) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.get(page.size() - 1).getId()));
+        }
+        return response.body(page);
+    }
+
+    /**
+     * GET  /reservations/list?stream=true : get all the reservations, written to the response while they are read
+     * from a database cursor.
+     *
+     * @param hotelId  the hotel of the reservations, {@value Reservation#DEFAULT_HOTEL_ID} if not specified
+     * @param response the response to write the JSON array of reservations to
+     * @throws IOException if the response couldn't be written
+     */
+    @GetMapping(value = "/reservations/list", params = "stream=true")
+    public void streamAllReservations(@RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId,
+            HttpServletResponse response) throws IOException {
+        log.debug("REST request to stream all Reservations");
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        writeAllReservations(hotelId, response.getOutputStream());
+    }
+
+    /**
+     * Write all the reservations of the hotel to the stream as a JSON array, while they are read from a database
+     * cursor.
+     */
+    void writeAllReservations(Integer hotelId, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.writeStartArray();
+            reservationService.streamAll(hotelId, reservation -> {
+                try {
+                    generator.writeObject(reservation);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * GET  /reservations/export : get the matching reservations as NDJSON, one reservation per line, written to the
+     * response while they are read from a database cursor, so that memory use doesn't depend on their number.
+     *
+     * @param from            the date the endDate should be later or equal to, no lower bound if not specified
+     * @param to              the date the startDate should be earlier or equal to, no upper bound if not specified
+     * @param roomNumber      the room of the reservations, all rooms if not specified
+     * @param includeArchived whether the archived reservations are exported too, before the current ones
+     * @param hotelId         the hotel of the reservations, {@value Reservation#DEFAULT_HOTEL_ID} if not specified
+     * @param response        the response to write the reservations to, with status 400 (Bad Request) if from is
+     *                        after to
+     * @throws IOException if the response couldn't be written
+     */
+    @GetMapping("/reservations/export")
+    public void exportReservations(
+            @RequestParam(required = false) @DateTimeFormat(pattern = DATE_FORMAT) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = DATE_FORMAT) LocalDate to,
+            @RequestParam(required = false) Integer roomNumber,
+            @RequestParam(defaultValue = "false") boolean includeArchived,
+            @RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId,
+            HttpServletResponse response) throws IOException {
+        log.debug("REST request to export Reservations of room {} from {} to {}", roomNumber, from, to);
+        if (from != null && to != null && !datesValid(from, to)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        response.setContentType(ReservationLineReader.APPLICATION_NDJSON_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            reservationService.streamMatching(hotelId, roomNumber, from, to, includeArchived, reservation -> {
+                try {
+                    generator.writeObject(reservation);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
     }
 
-    private <T> ResponseEntity<T> wrapOrNotFound(Optional<T> maybeResponse) {
-        return maybeResponse.map(response -> ok().body(response))
+    @ExceptionHandler(ReservationConflictException.class)
+    public ResponseEntity<Void> onConflict(ReservationConflictException e) {
+        log.debug("Rejected Reservation : {}", e.getMessage());
+        return new ResponseEntity<>(HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Void> onPreconditionFailed(OptimisticLockingFailureException e) {
+        log.debug("Rejected Reservation version : {}", e.getMessage());
+        return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler(PessimisticLockingFailureException.class)
+    public ResponseEntity<Void> onLockTimeout(PessimisticLockingFailureException e) {
+        log.warn("Room lock timed out : {}", e.getMessage());
+        return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Void> onRejected(RejectedExecutionException e) {
+        log.warn("Rejected request : {}", e.getMessage());
+        return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    private void importBatch(List<Reservation> batch, List<Integer> lineNumbers, ImportSummary summary) {
+        if (!batch.isEmpty()) {
+            List<BatchItemResult> results = saveByShard(batch);
+            for (int i = 0; i < results.size(); i++) {
+                summary.add(results.get(i).atIndex(lineNumbers.get(i)));
+            }
+            batch.clear();
+            lineNumbers.clear();
+        }
+    }
+
+    /**
+     * Save the reservations in one transaction per shard of their hotels.
+     *
+     * @return the result of every reservation, in the same order
+     */
+    private List<BatchItemResult> saveByShard(List<Reservation> reservations) {
+        Map<Integer, List<Integer>> indexesByShard = new TreeMap<>();
+        for (int i = 0; i < reservations.size(); i++) {
+            indexesByShard.computeIfAbsent(reservationService.shardOf(reservations.get(i).getHotelId()),
+                    shard -> new ArrayList<>()).add(i);
+        }
+        if (indexesByShard.size() == 1) {
+            return reservationService.saveAll(reservations);
+        }
+        BatchItemResult[] results = new BatchItemResult[reservations.size()];
+        for (List<Integer> indexes : indexesByShard.values()) {
+            List<BatchItemResult> shardResults = reservationService.saveAll(
+                    indexes.stream().map(reservations::get).collect(Collectors.toList()));
+            for (int i = 0; i < indexes.size(); i++) {
+                results[indexes.get(i)] = shardResults.get(i).atIndex(indexes.get(i));
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private ResponseEntity<Reservation> wrapOrNotFound(Optional<Reservation> maybeResponse) {
+        return maybeResponse.map(response -> ok().eTag(EntityTags.of(response)).body(response))
                 .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
+    private String validate(Reservation reservation) {
+        Set<ConstraintViolation<Reservation>> violations = validator.validate(reservation);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+        return checkBounds(reservation);
+    }
+
+    /**
+     * Check the reservation against the room inventory and the stay bounds, which the in-memory indexes rely on.
+     *
+     * @return the error, or null if the reservation is within bounds
+     */
+    private String checkBounds(Reservation reservation) {
+        if (!datesValid(reservation.getStartDate(), reservation.getEndDate())) {
+            return "startDate must not be after endDate";
+        }
+        if (reservation.getEndDate().isAfter(reservation.getStartDate().plusDays(Reservation.MAX_STAY_DAYS - 1))) {
+            return "stay must not be longer than " + Reservation.MAX_STAY_DAYS + " days";
+        }
+        if (reservation.getRoomNumber() > roomCount) {
+            return "roomNumber must be less than or equal to " + roomCount;
+        }
+        return null;
+    }
+
     private boolean datesValid(LocalDate from, LocalDate to) {
         return from.compareTo(to) <= 0;
     }
@@ -0,0 +1,41 @@
+package com.marryat.controller;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.marryat.config.JacksonConfig;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Applies the {@code fields} request parameter of the reservation endpoints, e.g. {@code ?fields=id,roomNumber}: only
+ * the listed properties of the reservations are serialized, the other ones being skipped by the Jackson property
+ * filter of reservations while the response is written. Unknown properties are ignored.
+ */
+@ControllerAdvice(assignableTypes = {ReservationController.class, AsyncReservationController.class})
+public class ReservationFieldsAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+    public static final String FIELDS_PARAMETER = "fields";
+
+    @Override
+    protected void beforeBodyWriteInternal(MappingJacksonValue bodyContainer, MediaType contentType,
+                                           MethodParameter returnType, ServerHttpRequest request,
+                                           ServerHttpResponse response) {
+        String fields = ((ServletServerHttpRequest) request).getServletRequest().getParameter(FIELDS_PARAMETER);
+        if (fields != null) {
+            Set<String> properties = new HashSet<>(Arrays.asList(
+                    StringUtils.trimArrayElements(StringUtils.commaDelimitedListToStringArray(fields))));
+            bodyContainer.setFilters(new SimpleFilterProvider().addFilter(JacksonConfig.RESERVATION_FILTER,
+                    SimpleBeanPropertyFilter.filterOutAllExcept(properties)));
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.marryat.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.marryat.domain.Reservation;
+import org.springframework.http.MediaType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the reservations of an import body one line at a time, so that only the line being read is held in memory.
+ * <p>
+ * NDJSON lines hold one reservation each. CSV bodies start with a header line naming the reservation property of every
+ * column, followed by one reservation per line; quoted values may contain commas and doubled quotes, not line breaks.
+ * The values are bound by the JSON object mapper, so both formats accept what a reservation in JSON accepts.
+ */
+class ReservationLineReader {
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final BufferedReader reader;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader reservationReader;
+    private final boolean csv;
+    private List<String> columns;
+    private int lineNumber;
+
+    ReservationLineReader(InputStream body, MediaType contentType, ObjectMapper objectMapper) {
+        Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        this.reader = new BufferedReader(new InputStreamReader(body, charset));
+        this.objectMapper = objectMapper;
+        this.reservationReader = objectMapper.readerFor(Reservation.class);
+        this.csv = MediaType.valueOf(TEXT_CSV_VALUE).includes(contentType);
+    }
+
+    /**
+     * Read the next reservation, skipping blank lines.
+     *
+     * @return the next line, or null at the end of the body
+     */
+    Line next() throws IOException {
+        String text = nextLine();
+        if (csv && columns == null && text != null) {
+            columns = split(text);
+            text = nextLine();
+        }
+        if (text == null) {
+            return null;
+        }
+        try {
+            return new Line(lineNumber, csv ? readCsv(text) : reservationReader.readValue(text), null);
+        } catch (IOException | IllegalArgumentException e) {
+            String reason = String.valueOf(e.getMessage()).split("\n")[0];
+            return new Line(lineNumber, null, "unreadable reservation: " + reason);
+        }
+    }
+
+    private String nextLine() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            lineNumber++;
+        } while (text != null && text.trim().isEmpty());
+        return text;
+    }
+
+    private Reservation readCsv(String text) {
+        List<String> values = split(text);
+        if (values.size() != columns.size()) {
+            throw new IllegalArgumentException(values.size() + " values for " + columns.size() + " columns");
+        }
+        Map<String, String> properties = new LinkedHashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            properties.put(columns.get(i), values.get(i).isEmpty() ? null : values.get(i));
+        }
+        return objectMapper.convertValue(properties, Reservation.class);
+    }
+
+    private static List<String> split(String text) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    value.append(c);
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString().trim());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString().trim());
+        return values;
+    }
+
+    /**
+     * One line of the body: its reservation, or the reason it couldn't be read.
+     */
+    static final class Line {
+        private final int number;
+        private final Reservation reservation;
+        private final String error;
+
+        private Line(int number, Reservation reservation, String error) {
+            this.number = number;
+            this.reservation = reservation;
+            this.error = error;
+        }
+
+        int getNumber() {
+            return number;
+        }
+
+        Reservation getReservation() {
+            return reservation;
+        }
+
+        String getError() {
+            return error;
+        }
+    }
+}
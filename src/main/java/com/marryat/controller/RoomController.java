@@ -0,0 +1,58 @@
+package com.marryat.controller;
+
+import com.marryat.domain.Reservation;
+import com.marryat.service.ReservationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.marryat.controller.ReservationController.DATE_FORMAT;
+import static com.marryat.controller.ReservationController.DEFAULT_HOTEL_ID;
+import static org.springframework.http.ResponseEntity.badRequest;
+import static org.springframework.http.ResponseEntity.ok;
+
+@RestController
+public class RoomController {
+    /**
+     * The longest range of an availability query, about a year.
+     */
+    static final int MAX_AVAILABILITY_DAYS = 366;
+
+    private final Logger log = LoggerFactory.getLogger(RoomController.class);
+
+    private final ReservationService reservationService;
+
+    @Autowired
+    public RoomController(ReservationService reservationService) {
+        this.reservationService = reservationService;
+    }
+
+    /**
+     * GET  /rooms/available : get the rooms of a hotel that are free on every day of the period.
+     *
+     * @param from    the first day of the period
+     * @param to      the last day of the period
+     * @param hotelId the hotel of the rooms, {@value Reservation#DEFAULT_HOTEL_ID} if not specified
+     * @return the ResponseEntity with status 200 (OK) and the list of room numbers in body, or with status 400 (Bad
+     * Request) if the period ends before it starts or is longer than {@value #MAX_AVAILABILITY_DAYS} days
+     */
+    @GetMapping("/rooms/available")
+    public ResponseEntity<List<Integer>> getAvailableRooms(
+            @RequestParam @DateTimeFormat(pattern = DATE_FORMAT) LocalDate from,
+            @RequestParam @DateTimeFormat(pattern = DATE_FORMAT) LocalDate to,
+            @RequestParam(defaultValue = DEFAULT_HOTEL_ID) Integer hotelId) {
+        log.debug("REST request to get rooms of hotel {} available from {} to {}", hotelId, from, to);
+        if (from.isAfter(to) || to.isAfter(from.plusDays(MAX_AVAILABILITY_DAYS - 1))) {
+            return badRequest().body(null);
+        }
+        return ok().body(reservationService.findAvailableRooms(hotelId, from, to));
+    }
+}
@@ -0,0 +1,113 @@
+package com.marryat.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * A reservation moved out of the reservation table once its stay got old enough, keeping its id and version. Archived
+ * reservations are only read.
+ */
+@Entity
+@Table(name = "reservation_archive", indexes = {
+        @Index(name = "idx_reservation_archive_hotel_dates", columnList = "hotel_id, end_date, start_date"),
+        @Index(name = "idx_reservation_archive_dates", columnList = "end_date, start_date"),
+        @Index(name = "idx_reservation_archive_room_dates", columnList = "room_number, hotel_id, start_date, end_date")
+})
+public class ArchivedReservation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private Long id;
+
+    @Column(name = "hotel_id", nullable = false)
+    private Integer hotelId;
+
+    @Column(name = "first_name", nullable = false)
+    private String firstName;
+
+    @Column(name = "last_name", nullable = false)
+    private String lastName;
+
+    @Column(name = "room_number", nullable = false)
+    private Integer roomNumber;
+
+    @Column(name = "start_date", nullable = false)
+    private LocalDate startDate;
+
+    @Column(name = "end_date", nullable = false)
+    private LocalDate endDate;
+
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Integer getHotelId() {
+        return hotelId;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public Integer getRoomNumber() {
+        return roomNumber;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ArchivedReservation reservation = (ArchivedReservation) o;
+        if (reservation.id == null || id == null) {
+            return false;
+        }
+        return Objects.equals(id, reservation.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return "ArchivedReservation{" +
+                "id=" + id +
+                ", hotelId=" + hotelId +
+                ", roomNumber='" + roomNumber + "'" +
+                ", startDate='" + startDate + "'" +
+                ", endDate='" + endDate + "'" +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -1,12 +1,18 @@
 package com.marryat.domain;
 
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
@@ -14,15 +20,42 @@ import java.time.LocalDate;
 import java.util.Objects;
 
 @Entity
-@Table(name = "reservation")
+@Table(name = "reservation", indexes = {
+        @Index(name = "idx_reservation_hotel_dates", columnList = "hotel_id, end_date, start_date"),
+        @Index(name = "idx_reservation_dates", columnList = "end_date, start_date"),
+        @Index(name = "idx_reservation_room_dates", columnList = "room_number, hotel_id, start_date, end_date")
+})
 public class Reservation implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The hotel of the reservations created without one, so that single-hotel clients keep working unchanged.
+     */
+    public static final int DEFAULT_HOTEL_ID = 1;
+
+    /**
+     * The longest stay, about a year, so that the days indexed for a reservation stay bounded.
+     */
+    public static final int MAX_STAY_DAYS = 366;
+
+    public static final String ID_SEQUENCE = "reservation_id_seq";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservation_id")
+    @GenericGenerator(name = "reservation_id", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+            parameters = {
+                    @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = ID_SEQUENCE),
+                    @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50"),
+                    @Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = "pooled-lo")
+            })
     private Long id;
 
+    @NotNull
+    @Min(value = 1)
+    @Column(name = "hotel_id", nullable = false)
+    private Integer hotelId = DEFAULT_HOTEL_ID;
+
     @NotNull
     @Column(name = "first_name", nullable = false)
     private String firstName;
@@ -45,6 +78,29 @@ public class Reservation implements Serializable {
     @Column(name = "end_date", nullable = false)
     private LocalDate endDate;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    public Reservation() {
+    }
+
+    /**
+     * Used by the constructor expressions of the read queries, whose reservations are not managed by the persistence
+     * context.
+     */
+    public Reservation(Long id, Integer hotelId, String firstName, String lastName, Integer roomNumber,
+                       LocalDate startDate, LocalDate endDate, Long version) {
+        this.id = id;
+        this.hotelId = hotelId;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.roomNumber = roomNumber;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.version = version;
+    }
+
     public Long getId() {
         return id;
     }
@@ -53,6 +109,14 @@ public class Reservation implements Serializable {
         this.id = id;
     }
 
+    public Integer getHotelId() {
+        return hotelId;
+    }
+
+    public void setHotelId(Integer hotelId) {
+        this.hotelId = hotelId;
+    }
+
     public String getFirstName() {
         return firstName;
     }
@@ -93,6 +157,14 @@ public class Reservation implements Serializable {
         this.endDate = endDate;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -117,11 +189,13 @@ public class Reservation implements Serializable {
     public String toString() {
         return "Reservation{" +
                 "id=" + id +
+                ", hotelId=" + hotelId +
                 ", firstName='" + firstName + "'" +
                 ", lastName='" + lastName + "'" +
                 ", roomNumber='" + roomNumber + "'" +
                 ", startDate='" + startDate + "'" +
                 ", endDate='" + endDate + "'" +
+                ", version=" + version +
                 '}';
     }
 }
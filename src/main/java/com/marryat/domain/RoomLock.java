@@ -0,0 +1,89 @@
+package com.marryat.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * The lock row of a room, locked by the transactions booking the room so that they are serialized across all the
+ * application nodes sharing the database. Room numbers are only unique within a hotel, so the row is keyed by both.
+ */
+@Entity
+@Table(name = "room_lock")
+@IdClass(RoomLock.Key.class)
+public class RoomLock implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "hotel_id")
+    private Integer hotelId;
+
+    @Id
+    @Column(name = "room_number")
+    private Integer roomNumber;
+
+    protected RoomLock() {
+    }
+
+    public RoomLock(Integer hotelId, Integer roomNumber) {
+        this.hotelId = hotelId;
+        this.roomNumber = roomNumber;
+    }
+
+    public Integer getHotelId() {
+        return hotelId;
+    }
+
+    public Integer getRoomNumber() {
+        return roomNumber;
+    }
+
+    @Override
+    public String toString() {
+        return "RoomLock{" +
+                "hotelId=" + hotelId +
+                ", roomNumber=" + roomNumber +
+                '}';
+    }
+
+    /**
+     * The primary key of a lock row.
+     */
+    public static class Key implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Integer hotelId;
+        private Integer roomNumber;
+
+        protected Key() {
+        }
+
+        public Key(Integer hotelId, Integer roomNumber) {
+            this.hotelId = hotelId;
+            this.roomNumber = roomNumber;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(hotelId, key.hotelId) && Objects.equals(roomNumber, key.roomNumber);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hotelId, roomNumber);
+        }
+    }
+}
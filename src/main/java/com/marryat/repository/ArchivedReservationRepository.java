@@ -0,0 +1,97 @@
+package com.marryat.repository;
+
+import com.marryat.domain.ArchivedReservation;
+import com.marryat.domain.Reservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.QueryHint;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+/**
+ * The archived reservations are read as unmanaged {@link Reservation}s, so that they are served like the current ones.
+ */
+public interface ArchivedReservationRepository extends JpaRepository<ArchivedReservation, Long> {
+    String SELECT_RESERVATIONS = "select new com.marryat.domain.Reservation(a.id, a.hotelId, a.firstName, " +
+            "a.lastName, a.roomNumber, a.startDate, a.endDate, a.version) from ArchivedReservation a";
+
+    /**
+     * Copy the reservations among the ids whose stay ended before the date into the archive, in one statement.
+     *
+     * @return the number of archived reservations
+     */
+    @Modifying
+    @Query("insert into ArchivedReservation (id, hotelId, firstName, lastName, roomNumber, startDate, endDate, " +
+            "version) select r.id, r.hotelId, r.firstName, r.lastName, r.roomNumber, r.startDate, r.endDate, " +
+            "r.version from Reservation r where r.id in ?1 and r.endDate < ?2")
+    int archive(Collection<Long> ids, LocalDate before);
+
+    /**
+     * Archived reservations of the hotel overlapping the range: staying at least one day between the two dates, both
+     * inclusive.
+     */
+    @Query(SELECT_RESERVATIONS + " where a.hotelId = ?1 and a.startDate <= ?3 and a.endDate >= ?2")
+    List<Reservation> findReservationsWithinDateRange(Integer hotelId, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Archived reservations of the room overlapping the range, both dates inclusive.
+     */
+    @Query(SELECT_RESERVATIONS + " where a.hotelId = ?1 and a.roomNumber = ?2 and a.startDate <= ?4" +
+            " and a.endDate >= ?3")
+    List<Reservation> findReservationsOfRoomWithinDateRange(Integer hotelId, Integer roomNumber, LocalDate startDate,
+                                                            LocalDate endDate);
+
+    /**
+     * The start and end dates of the archived reservations of the hotel overlapping the range, both inclusive, read
+     * from a cursor.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select a.startDate, a.endDate from ArchivedReservation a where a.hotelId = ?1" +
+            " and a.startDate <= ?3 and a.endDate >= ?2")
+    Stream<Object[]> streamStaysOfHotelWithinDateRange(Integer hotelId, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * The start and end dates of the archived reservations of all the hotels of the shard overlapping the range, both
+     * inclusive, read from a cursor.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select a.startDate, a.endDate from ArchivedReservation a where a.startDate <= ?2 and a.endDate >= ?1")
+    Stream<Object[]> streamStaysWithinDateRange(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Archived reservations of the hotel, read from a cursor in id order.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_RESERVATIONS + " where a.hotelId = ?1 order by a.id")
+    Stream<Reservation> streamReservations(Integer hotelId);
+
+    /**
+     * Archived reservations of the room, read from a cursor in id order.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_RESERVATIONS + " where a.hotelId = ?1 and a.roomNumber = ?2 order by a.id")
+    Stream<Reservation> streamReservationsOfRoom(Integer hotelId, Integer roomNumber);
+
+    /**
+     * Archived reservations of the hotel overlapping the range, both dates inclusive, read from a cursor in id order.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_RESERVATIONS + " where a.hotelId = ?1 and a.startDate <= ?3 and a.endDate >= ?2 order by a.id")
+    Stream<Reservation> streamReservationsWithinDateRange(Integer hotelId, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Archived reservations of the room overlapping the range, both dates inclusive, read from a cursor in id order.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_RESERVATIONS + " where a.hotelId = ?1 and a.roomNumber = ?2 and a.startDate <= ?4" +
+            " and a.endDate >= ?3 order by a.id")
+    Stream<Reservation> streamReservationsOfRoomWithinDateRange(Integer hotelId, Integer roomNumber,
+                                                                LocalDate startDate, LocalDate endDate);
+}
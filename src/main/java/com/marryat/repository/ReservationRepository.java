@@ -2,13 +2,184 @@ package com.marryat.repository;
 
 
 import com.marryat.domain.Reservation;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+/**
+ * The read queries select the columns of the reservations into new, unmanaged reservations: Hibernate doesn't register
+ * them in the persistence context nor keep snapshots of them, so reading many reservations costs less time and
+ * memory. Changes to them are not saved unless they are passed to {@link #save(Object)}.
+ * <p>
+ * The queries run on the shard the calling thread or transaction is routed to. The queries of one hotel filter on its
+ * id, as a shard may hold several hotels; the others read the whole shard.
+ */
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
-    @Query("select r from Reservation r where r.startDate between ?1 and ?2")
-    List<Reservation> findReservationsWithinDateRange(LocalDate startDate, LocalDate endDate);
+    String SELECT_UNMANAGED = "select new com.marryat.domain.Reservation(r.id, r.hotelId, r.firstName, " +
+            "r.lastName, r.roomNumber, r.startDate, r.endDate, r.version) from Reservation r";
+
+    /**
+     * Reservations of the hotel overlapping the range: staying at least one day between the two dates, both inclusive.
+     * Read-only, like the inherited finders, as the service calls it outside of its own transactions.
+     */
+    @Transactional(readOnly = true)
+    @Query(SELECT_UNMANAGED + " where r.hotelId = ?1 and r.startDate <= ?3 and r.endDate >= ?2")
+    List<Reservation> findReservationsWithinDateRange(Integer hotelId, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Reservations of the room overlapping the range: staying at least one day between the two dates, both inclusive.
+     */
+    @Transactional(readOnly = true)
+    @Query(SELECT_UNMANAGED + " where r.hotelId = ?1 and r.roomNumber = ?2 and r.startDate <= ?4 and r.endDate >= ?3")
+    List<Reservation> findReservationsOfRoomWithinDateRange(Integer hotelId, Integer roomNumber, LocalDate startDate,
+                                                            LocalDate endDate);
+
+    /**
+     * Ids of the reservations of the room overlapping the range, both dates inclusive.
+     */
+    @Query("select r.id from Reservation r where r.hotelId = ?1 and r.roomNumber = ?2 and r.startDate <= ?4" +
+            " and r.endDate >= ?3")
+    List<Long> findIdsOfRoomWithinDateRange(Integer hotelId, Integer roomNumber, LocalDate startDate,
+                                            LocalDate endDate);
+
+    /**
+     * Reservations of the shard whose stay ended before the date, oldest first.
+     */
+    @Query(SELECT_UNMANAGED + " where r.endDate < ?1 order by r.endDate")
+    List<Reservation> findReservationsEndingBefore(LocalDate date, Pageable pageable);
+
+    /**
+     * Ids among the given ones of the reservations whose stay ended before the date.
+     */
+    @Query("select r.id from Reservation r where r.id in ?1 and r.endDate < ?2")
+    List<Long> findIdsByIdInEndingBefore(Collection<Long> ids, LocalDate date);
+
+    /**
+     * The reservation of the hotel with the id, as stored, or null if the hotel has none.
+     */
+    @Query(SELECT_UNMANAGED + " where r.id = ?1 and r.hotelId = ?2")
+    Reservation findReservationById(Long id, Integer hotelId);
+
+    /**
+     * Reservations among the given ids of the hotel, unknown ids and the ids of other hotels left out.
+     */
+    @Query(SELECT_UNMANAGED + " where r.id in ?1 and r.hotelId = ?2")
+    List<Reservation> findReservationsByIdInAndHotelId(Collection<Long> ids, Integer hotelId);
+
+    /**
+     * Reservations among the given ids, of any hotel, unknown ids left out.
+     */
+    @Query(SELECT_UNMANAGED + " where r.id in ?1")
+    List<Reservation> findReservationsByIdIn(Collection<Long> ids);
+
+    @Query("select r.version from Reservation r where r.id = ?1 and r.hotelId = ?2")
+    Long findVersionById(Long id, Integer hotelId);
+
+    @Modifying
+    @Query("delete from Reservation r where r.id = ?1 and r.hotelId = ?2 and r.version = ?3")
+    int deleteByIdAndVersion(Long id, Integer hotelId, Long version);
+
+    /**
+     * Delete in one statement, without loading the reservation first.
+     *
+     * @return the number of deleted reservations, 0 if the hotel has none with the id
+     */
+    @Modifying
+    @Query("delete from Reservation r where r.id = ?1 and r.hotelId = ?2")
+    int deleteReservationById(Long id, Integer hotelId);
+
+    /**
+     * Delete in one statement, without loading the reservations first. Unknown ids are ignored.
+     *
+     * @return the number of deleted reservations
+     */
+    @Modifying
+    @Query("delete from Reservation r where r.id in ?1")
+    int deleteReservationsByIdIn(Collection<Long> ids);
+
+    /**
+     * Delete in one statement the reservations among the ids whose stay ended before the date.
+     *
+     * @return the number of deleted reservations
+     */
+    @Modifying
+    @Query("delete from Reservation r where r.id in ?1 and r.endDate < ?2")
+    int deleteReservationsByIdInEndingBefore(Collection<Long> ids, LocalDate date);
+
+
+    /**
+     * Keyset page: the reservations of the shard with an id greater than the given one, in id order. Only the page
+     * size of the pageable is meant to be used, the offset stays 0 however deep the page is.
+     */
+    @Query(SELECT_UNMANAGED + " where r.id > ?1 order by r.id asc")
+    List<Reservation> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Keyset page of the reservations of the hotel.
+     *
+     * @see #findByIdGreaterThanOrderByIdAsc(Long, Pageable)
+     */
+    @Query(SELECT_UNMANAGED + " where r.hotelId = ?1 and r.id > ?2 order by r.id asc")
+    List<Reservation> findByHotelIdAndIdGreaterThanOrderByIdAsc(Integer hotelId, Long id, Pageable pageable);
+
+    /**
+     * The start and end dates of the reservations of the hotel overlapping the range, both inclusive, read from a
+     * cursor.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select r.startDate, r.endDate from Reservation r where r.hotelId = ?1" +
+            " and r.startDate <= ?3 and r.endDate >= ?2")
+    Stream<Object[]> streamStaysOfHotelWithinDateRange(Integer hotelId, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * The start and end dates of the reservations of all the hotels of the shard overlapping the range, both
+     * inclusive, read from a cursor.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select r.startDate, r.endDate from Reservation r where r.startDate <= ?2 and r.endDate >= ?1")
+    Stream<Object[]> streamStaysWithinDateRange(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Reservations of the hotel, read from a cursor in id order.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_UNMANAGED + " where r.hotelId = ?1 order by r.id")
+    Stream<Reservation> streamReservations(Integer hotelId);
+
+    /**
+     * Reservations of the room, read from a cursor in id order.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_UNMANAGED + " where r.hotelId = ?1 and r.roomNumber = ?2 order by r.id")
+    Stream<Reservation> streamReservationsOfRoom(Integer hotelId, Integer roomNumber);
+
+    /**
+     * Reservations of the hotel overlapping the range, both dates inclusive, read from a cursor in id order.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_UNMANAGED + " where r.hotelId = ?1 and r.startDate <= ?3 and r.endDate >= ?2 order by r.id")
+    Stream<Reservation> streamReservationsWithinDateRange(Integer hotelId, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Reservations of the room overlapping the range, both dates inclusive, read from a cursor in id order.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_UNMANAGED + " where r.hotelId = ?1 and r.roomNumber = ?2 and r.startDate <= ?4 and r.endDate >= ?3" +
+            " order by r.id")
+    Stream<Reservation> streamReservationsOfRoomWithinDateRange(Integer hotelId, Integer roomNumber,
+                                                                LocalDate startDate, LocalDate endDate);
+
+    @Query(SELECT_UNMANAGED)
+    List<Reservation> findAllReservations();
 }
@@ -0,0 +1,17 @@
+package com.marryat.repository;
+
+import com.marryat.domain.RoomLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import javax.persistence.LockModeType;
+
+public interface RoomLockRepository extends JpaRepository<RoomLock, RoomLock.Key> {
+    /**
+     * The lock row of the room of the hotel, locked until the end of the transaction.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l from RoomLock l where l.hotelId = ?1 and l.roomNumber = ?2")
+    RoomLock findForUpdate(Integer hotelId, Integer roomNumber);
+}
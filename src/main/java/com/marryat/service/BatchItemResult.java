@@ -0,0 +1,84 @@
+package com.marryat.service;
+
+import com.marryat.domain.Reservation;
+
+/**
+ * The outcome of saving one reservation of a batch.
+ */
+public class BatchItemResult {
+
+    public enum Outcome {
+        CREATED, UPDATED, CONFLICT, INVALID
+    }
+
+    private final int index;
+    private final Outcome outcome;
+    private final Long id;
+    private final String message;
+    private final Long conflictingId;
+
+    private BatchItemResult(int index, Outcome outcome, Long id, String message, Long conflictingId) {
+        this.index = index;
+        this.outcome = outcome;
+        this.id = id;
+        this.message = message;
+        this.conflictingId = conflictingId;
+    }
+
+    public static BatchItemResult created(int index, Reservation reservation) {
+        return new BatchItemResult(index, Outcome.CREATED, reservation.getId(), null, null);
+    }
+
+    public static BatchItemResult updated(int index, Reservation reservation) {
+        return new BatchItemResult(index, Outcome.UPDATED, reservation.getId(), null, null);
+    }
+
+    public static BatchItemResult conflict(int index, ReservationConflictException e) {
+        return new BatchItemResult(index, Outcome.CONFLICT, null, e.getMessage(), e.getConflictingId());
+    }
+
+    public static BatchItemResult invalid(int index, String message) {
+        return new BatchItemResult(index, Outcome.INVALID, null, message, null);
+    }
+
+    /**
+     * @return the same result for the reservation at another index, such as its line in a file
+     */
+    public BatchItemResult atIndex(int index) {
+        return new BatchItemResult(index, outcome, id, message, conflictingId);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the id of the reservation already booking the room, for a conflict
+     */
+    public Long getConflictingId() {
+        return conflictingId;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchItemResult{" +
+                "index=" + index +
+                ", outcome=" + outcome +
+                ", id=" + id +
+                ", message='" + message + "'" +
+                ", conflictingId=" + conflictingId +
+                '}';
+    }
+}
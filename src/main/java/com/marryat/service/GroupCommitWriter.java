@@ -0,0 +1,272 @@
+package com.marryat.service;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.marryat.config.ReservationProperties;
+import com.marryat.domain.Reservation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Write pipeline coalescing the reservations created concurrently into batches, each saved in one transaction by
+ * {@link ReservationService#saveAll(List)}, so that a commit is shared by many requests. The reservations of a batch
+ * are saved in one transaction per shard of their hotels.
+ * <p>
+ * A batch is closed when it reaches the maximum batch size, or when its first reservation has waited for the maximum
+ * wait time. Every reservation then gets its own outcome: a reservation overlapping another booking fails alone, and
+ * if the batch transaction itself fails, its reservations are retried one transaction each. The batch sizes are
+ * published as the {@code histogram.group-commit.batch.size} metric and the retried batches counted by
+ * {@code counter.group-commit.fallbacks}.
+ * <p>
+ * Whatever a batch throws, errors included, fails the reservations of that batch only, and the writer goes on with
+ * the next one. A request whose batch hasn't started committing within the timeout withdraws its reservation.
+ */
+@Component
+@ConditionalOnProperty(prefix = "reservations.group-commit", name = "enabled", havingValue = "true")
+public class GroupCommitWriter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GroupCommitWriter.class);
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final ReservationService reservationService;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final long timeoutMillis;
+    private final BlockingQueue<PendingSave> queue;
+    private final Histogram batchSizes;
+    private final Counter fallbacks;
+    private final ExecutorService writer =
+            Executors.newSingleThreadExecutor(new CustomizableThreadFactory("group-commit-"));
+    private volatile boolean running;
+
+    @Autowired
+    public GroupCommitWriter(ReservationService reservationService, ReservationProperties properties,
+                             MetricRegistry metricRegistry) {
+        ReservationProperties.GroupCommit config = properties.getGroupCommit();
+        this.reservationService = reservationService;
+        this.maxBatchSize = config.getMaxBatchSize();
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitMillis());
+        this.timeoutMillis = config.getTimeoutMillis();
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.batchSizes = metricRegistry.histogram("histogram.group-commit.batch.size");
+        this.fallbacks = metricRegistry.counter("counter.group-commit.fallbacks");
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer.execute(this::writeBatches);
+    }
+
+    /**
+     * Stop taking reservations, and save the queued ones before the database goes away.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.shutdown();
+        writer.awaitTermination(10, TimeUnit.SECONDS);
+        List<PendingSave> batch = new ArrayList<>(maxBatchSize);
+        while (queue.drainTo(batch, maxBatchSize) > 0) {
+            commitOrFail(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Queue a new reservation to be saved with the next batch.
+     *
+     * @param reservation the reservation to create
+     * @return the future of the persisted reservation, failed with {@link ReservationConflictException} if the room
+     * is already booked, or with {@link RejectedExecutionException} if the queue is full
+     */
+    public CompletableFuture<Reservation> submit(Reservation reservation) {
+        return enqueue(reservation).future;
+    }
+
+    /**
+     * Save a new reservation with the next batch, waiting for the batch to be committed. A reservation whose batch
+     * hasn't started committing within the timeout is withdrawn; once started, the commit is waited for, as it always
+     * completes the reservation.
+     *
+     * @param reservation the reservation to create
+     * @return the persisted reservation
+     * @throws ReservationConflictException if the room is already booked on any day of the reservation
+     * @throws RejectedExecutionException   if the queue is full, or the reservation was withdrawn
+     */
+    public Reservation save(Reservation reservation) {
+        PendingSave pending = enqueue(reservation);
+        try {
+            return pending.future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (pending.take()) {
+                throw new RejectedExecutionException("Group commit didn't start within " + timeoutMillis + " ms");
+            }
+            return join(pending.future);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (pending.take()) {
+                throw new RejectedExecutionException("Interrupted while waiting for the group commit");
+            }
+            return join(pending.future);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private PendingSave enqueue(Reservation reservation) {
+        PendingSave pending = new PendingSave(reservation);
+        if (!running) {
+            pending.future.completeExceptionally(new RejectedExecutionException("Group commit is stopped"));
+        } else if (!queue.offer(pending)) {
+            pending.future.completeExceptionally(new RejectedExecutionException("Group commit queue is full"));
+        }
+        return pending;
+    }
+
+    private static Reservation join(CompletableFuture<Reservation> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new CompletionException(cause);
+    }
+
+    private void writeBatches() {
+        List<PendingSave> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (running) {
+                PendingSave first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    PendingSave next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commitOrFail(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Commit a batch, failing its reservations with whatever the commit threw, so that neither the writer nor the
+     * requests waiting for the batch are left behind. The reservations withdrawn in the meantime are skipped.
+     */
+    private void commitOrFail(List<PendingSave> batch) {
+        batch.removeIf(pending -> !pending.take());
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            commit(batch);
+        } catch (Throwable e) {
+            LOGGER.error("Group commit of {} Reservations failed", batch.size(), e);
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+        }
+    }
+
+    private void commit(List<PendingSave> batch) {
+        batchSizes.update(batch.size());
+        batch.stream()
+                .collect(Collectors.groupingBy(pending -> reservationService.shardOf(pending.reservation.getHotelId()),
+                        TreeMap::new, Collectors.toList()))
+                .values()
+                .forEach(this::commitShard);
+    }
+
+    private void commitShard(List<PendingSave> batch) {
+        List<Reservation> reservations = new ArrayList<>(batch.size());
+        batch.forEach(pending -> reservations.add(pending.reservation));
+        List<BatchItemResult> results;
+        try {
+            results = reservationService.saveAll(reservations);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Group commit of {} Reservations failed, saving them one by one : {}", batch.size(),
+                    e.getMessage());
+            fallbacks.inc();
+            batch.forEach(this::commitAlone);
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            PendingSave pending = batch.get(i);
+            BatchItemResult result = results.get(i);
+            if (result.getOutcome() == BatchItemResult.Outcome.CONFLICT) {
+                pending.future.completeExceptionally(
+                        new ReservationConflictException(pending.reservation, result.getConflictingId()));
+            } else {
+                pending.future.complete(pending.reservation);
+            }
+        }
+    }
+
+    private void commitAlone(PendingSave pending) {
+        // The rolled back transaction may have given the reservation an id it doesn't have in the database
+        pending.reservation.setId(null);
+        pending.reservation.setVersion(null);
+        try {
+            pending.future.complete(reservationService.save(pending.reservation));
+        } catch (RuntimeException e) {
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    private static final class PendingSave {
+        private final Reservation reservation;
+        private final CompletableFuture<Reservation> future = new CompletableFuture<>();
+        private final AtomicBoolean taken = new AtomicBoolean();
+
+        private PendingSave(Reservation reservation) {
+            this.reservation = reservation;
+        }
+
+        /**
+         * Take the reservation, to commit it or to withdraw it, which only one of the writer and the request waiting
+         * for it gets to do.
+         */
+        private boolean take() {
+            return taken.compareAndSet(false, true);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.marryat.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The outcome of an import: the counts of created and rejected reservations, and the first rejections, each one
+ * indexed by the line of its reservation.
+ */
+public class ImportSummary {
+    /**
+     * The maximum number of rejections reported, so that the summary of a bad file stays small.
+     */
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    private int received;
+    private int created;
+    private int rejected;
+    private final List<BatchItemResult> errors = new ArrayList<>();
+
+    /**
+     * Count the outcome of one reservation.
+     */
+    public void add(BatchItemResult result) {
+        received++;
+        if (result.getOutcome() == BatchItemResult.Outcome.CREATED) {
+            created++;
+        } else {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(result);
+            }
+        }
+    }
+
+    /**
+     * @return the number of reservations read, valid or not
+     */
+    public int getReceived() {
+        return received;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    /**
+     * @return the number of reservations not created, being invalid or overlapping another booking
+     */
+    public int getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return the rejections, up to {@value #MAX_REPORTED_ERRORS} of them
+     */
+    public List<BatchItemResult> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportSummary{" +
+                "received=" + received +
+                ", created=" + created +
+                ", rejected=" + rejected +
+                '}';
+    }
+}
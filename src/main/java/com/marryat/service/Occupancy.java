@@ -0,0 +1,74 @@
+package com.marryat.service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * The number of rooms booked on every day of a range.
+ * <p>
+ * Stays are added as a difference array: +1 on the first day of a stay within the range and -1 after its last one, so
+ * adding a stay costs the same whatever its length, and the counts are the running sum of the differences.
+ */
+public class Occupancy {
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final int[] changes;
+
+    public Occupancy(LocalDate from, LocalDate to) {
+        this.from = from;
+        this.to = to;
+        this.changes = new int[Math.toIntExact(ChronoUnit.DAYS.between(from, to)) + 2];
+    }
+
+    /**
+     * Count the room as booked on the days of the stay within the range.
+     *
+     * @param startDate the first day of the stay
+     * @param endDate the last day of the stay
+     */
+    public void add(LocalDate startDate, LocalDate endDate) {
+        long first = Math.max(ChronoUnit.DAYS.between(from, startDate), 0);
+        long last = Math.min(ChronoUnit.DAYS.between(from, endDate), changes.length - 2);
+        if (first <= last) {
+            changes[(int) first]++;
+            changes[(int) last + 1]--;
+        }
+    }
+
+    /**
+     * Add the stays counted by another occupancy of the same range, such as the one of another shard.
+     *
+     * @param other the occupancy of the same range
+     */
+    public void merge(Occupancy other) {
+        if (!from.equals(other.from) || !to.equals(other.to)) {
+            throw new IllegalArgumentException("Can't merge the occupancy of " + other.from + " to " + other.to +
+                    " into the one of " + from + " to " + to);
+        }
+        for (int day = 0; day < changes.length; day++) {
+            changes[day] += other.changes[day];
+        }
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    /**
+     * @return the number of rooms booked on every day of the range, the first one being the one of the first day
+     */
+    public int[] getRooms() {
+        int[] rooms = new int[changes.length - 1];
+        int booked = 0;
+        for (int day = 0; day < rooms.length; day++) {
+            booked += changes[day];
+            rooms[day] = booked;
+        }
+        return rooms;
+    }
+}
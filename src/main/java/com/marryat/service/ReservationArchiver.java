@@ -0,0 +1,74 @@
+package com.marryat.service;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.marryat.config.HotelShards;
+import com.marryat.config.ReservationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDate;
+
+/**
+ * Periodically moves the reservations whose stay ended more than the horizon ago into the archive, in batches of one
+ * transaction each, so that the reservation table only holds the current and recent stays. The shards are archived one
+ * after the other, each into its own archive table. The archived reservations are counted by
+ * {@code counter.archive.reservations}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "reservations.archive", name = "enabled", havingValue = "true")
+public class ReservationArchiver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReservationArchiver.class);
+
+    private final ReservationService reservationService;
+    private final HotelShards shards;
+    private final Clock clock;
+    private final int horizonDays;
+    private final int batchSize;
+    private final Counter archived;
+
+    @Autowired
+    public ReservationArchiver(ReservationService reservationService, HotelShards shards,
+                               ReservationProperties properties, MetricRegistry metricRegistry) {
+        this(reservationService, shards, properties, metricRegistry, Clock.systemDefaultZone());
+    }
+
+    ReservationArchiver(ReservationService reservationService, HotelShards shards, ReservationProperties properties,
+                        MetricRegistry metricRegistry, Clock clock) {
+        ReservationProperties.Archive config = properties.getArchive();
+        this.reservationService = reservationService;
+        this.shards = shards;
+        this.clock = clock;
+        this.horizonDays = config.getHorizonDays();
+        this.batchSize = config.getBatchSize();
+        this.archived = metricRegistry.counter("counter.archive.reservations");
+    }
+
+    /**
+     * Archive all the reservations ended before the horizon, on every shard.
+     *
+     * @return the number of archived reservations
+     */
+    @Scheduled(fixedDelayString = "${reservations.archive.interval-millis:3600000}")
+    public int archive() {
+        LocalDate before = LocalDate.now(clock).minusDays(horizonDays);
+        int total = 0;
+        for (int shard : shards.getShards()) {
+            int batch;
+            do {
+                batch = HotelShards.onShard(shard, () -> reservationService.archive(before, batchSize));
+                archived.inc(batch);
+                total += batch;
+            } while (batch == batchSize);
+        }
+        if (total > 0) {
+            LOGGER.info("Archived {} Reservations ended before {}", total, before);
+        }
+        return total;
+    }
+}
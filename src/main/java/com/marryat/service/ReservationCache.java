@@ -0,0 +1,137 @@
+package com.marryat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.marryat.config.ReservationProperties;
+import com.marryat.domain.Reservation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of reservations by shard and id, evicting the least recently used entries over the
+ * maximum size and entries older than the time to live. Concurrent loads of the same reservation are coalesced into
+ * one, even with the cache disabled. A reservation is only found on the shard of its hotel, so a lookup on another
+ * shard neither shares the load nor the entry of a lookup on the right one. Its hit, miss, eviction and coalesced load
+ * counts are published as metrics.
+ */
+@Component
+public class ReservationCache implements PublicMetrics {
+    private static final String METRIC_PREFIX = "cache.reservations.";
+
+    private final boolean enabled;
+    private final Cache<Key, Reservation> cache;
+    private final SingleFlight<Key, Reservation> loads;
+
+    @Autowired
+    public ReservationCache(ReservationProperties properties) {
+        ReservationProperties.Cache config = properties.getCache();
+        this.enabled = config.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getTimeToLiveSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        this.loads = new SingleFlight<>(cache::invalidate);
+    }
+
+    /**
+     * Get a reservation, loading it on a miss. Missing reservations are not cached.
+     *
+     * @param shard  the shard the reservation is loaded from
+     * @param id     the id of the reservation
+     * @param loader the loader of the reservation from the database of the shard
+     * @return the reservation, or null if there is none with the id on the shard
+     */
+    public Reservation get(int shard, Long id, Function<Long, Reservation> loader) {
+        Key key = new Key(shard, id);
+        if (!enabled) {
+            return loads.execute(key, () -> loader.apply(id));
+        }
+        Reservation reservation = cache.getIfPresent(key);
+        if (reservation != null) {
+            return reservation;
+        }
+        return loads.execute(key, () -> {
+            Reservation loaded = loader.apply(id);
+            if (loaded != null) {
+                cache.put(key, loaded);
+            }
+            return loaded;
+        });
+    }
+
+    /**
+     * Drop the cached reservation.
+     *
+     * @param shard the shard of the reservation
+     * @param id    the id of the reservation
+     */
+    public void invalidate(int shard, Long id) {
+        Key key = new Key(shard, id);
+        loads.forget(key::equals);
+        cache.invalidate(key);
+    }
+
+    /**
+     * @return the hit, miss and eviction counts of the cache
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the number of loads that got the reservation loaded by a concurrent one
+     */
+    public long coalescedCount() {
+        return loads.coalescedCount();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats stats = cache.stats();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "size", cache.estimatedSize()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "hits", stats.hitCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "misses", stats.missCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "evictions", stats.evictionCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "coalesced", loads.coalescedCount()));
+        return metrics;
+    }
+
+    private static final class Key {
+        private final int shard;
+        private final Long id;
+
+        private Key(int shard, Long id) {
+            this.shard = shard;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return shard == key.shard && Objects.equals(id, key.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(shard, id);
+        }
+    }
+}
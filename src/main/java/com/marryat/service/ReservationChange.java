@@ -0,0 +1,53 @@
+package com.marryat.service;
+
+import com.marryat.domain.Reservation;
+
+/**
+ * A committed change of one reservation, numbered in the order of the change feed.
+ */
+public class ReservationChange {
+
+    public enum Type {
+        SAVED, DELETED, ARCHIVED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final Long id;
+    private final Reservation reservation;
+
+    ReservationChange(long sequence, Type type, Long id, Reservation reservation) {
+        this.sequence = sequence;
+        this.type = type;
+        this.id = id;
+        this.reservation = reservation;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * @return the reservation as committed, for a saved one
+     */
+    public Reservation getReservation() {
+        return reservation;
+    }
+
+    @Override
+    public String toString() {
+        return "ReservationChange{" +
+                "sequence=" + sequence +
+                ", type=" + type +
+                ", id=" + id +
+                '}';
+    }
+}
@@ -0,0 +1,164 @@
+package com.marryat.service;
+
+import com.marryat.config.ReservationProperties;
+import com.marryat.domain.Reservation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The latest committed changes of the reservations, in the order they were committed, for the consumers keeping a
+ * copy of the reservations in sync without reading them all again.
+ * <p>
+ * Changes are numbered by a sequence starting at the startup time in microseconds, so the sequences of a previous run
+ * of the application are older than all the changes kept, like the ones evicted once the log is full: consumers
+ * asking for changes after them have to read the reservations again.
+ * <p>
+ * Changes are appended by the committing transactions, while they still hold their room locks, so the listeners are
+ * run on a notifier thread of their own rather than in the write path. Changes appended while the listeners are
+ * waiting to run are notified in the same run.
+ */
+@Component
+public class ReservationChangeLog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReservationChangeLog.class);
+
+    private final int capacity;
+    private final Deque<ReservationChange> changes = new ArrayDeque<>();
+    private final Set<Runnable> listeners = ConcurrentHashMap.newKeySet();
+    private final Executor notifier;
+    private final AtomicBoolean notificationPending = new AtomicBoolean();
+    private long lastSequence;
+
+    @Autowired
+    public ReservationChangeLog(ReservationProperties properties) {
+        this(properties, TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()),
+                Executors.newSingleThreadExecutor(new CustomizableThreadFactory("change-notifier-")));
+    }
+
+    ReservationChangeLog(ReservationProperties properties, long startSequence, Executor notifier) {
+        this.capacity = properties.getChanges().getCapacity();
+        this.lastSequence = startSequence;
+        this.notifier = notifier;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (notifier instanceof ExecutorService) {
+            ((ExecutorService) notifier).shutdownNow();
+        }
+    }
+
+    /**
+     * Record the reservation as saved, with its committed state.
+     */
+    public void saved(Reservation reservation) {
+        append(ReservationChange.Type.SAVED, reservation.getId(), new Reservation(reservation.getId(),
+                reservation.getHotelId(), reservation.getFirstName(), reservation.getLastName(),
+                reservation.getRoomNumber(), reservation.getStartDate(), reservation.getEndDate(),
+                reservation.getVersion()));
+    }
+
+    public void deleted(Long id) {
+        append(ReservationChange.Type.DELETED, id, null);
+    }
+
+    public void archived(Long id) {
+        append(ReservationChange.Type.ARCHIVED, id, null);
+    }
+
+    /**
+     * @return the sequence of the latest change, the one to get the next changes after
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Whether all the changes after the sequence are still kept.
+     *
+     * @param sequence the sequence of the latest change a consumer got
+     * @return false if changes after it were evicted or if it comes from another run of the application
+     */
+    public synchronized boolean isKept(long sequence) {
+        long oldestKept = changes.isEmpty() ? lastSequence + 1 : changes.getFirst().getSequence();
+        return sequence >= oldestKept - 1 && sequence <= lastSequence;
+    }
+
+    /**
+     * Get the changes after the sequence, oldest first.
+     *
+     * @param sequence the sequence of the latest change a consumer got
+     * @param limit    the maximum number of changes
+     * @return the changes, empty if there is none yet
+     */
+    public synchronized List<ReservationChange> findAfter(long sequence, int limit) {
+        if (sequence >= lastSequence) {
+            return Collections.emptyList();
+        }
+        List<ReservationChange> result = new ArrayList<>((int) Math.min(limit, lastSequence - sequence));
+        long newerThanLimit = lastSequence - sequence - limit;
+        Iterator<ReservationChange> newestFirst = changes.descendingIterator();
+        while (newestFirst.hasNext()) {
+            ReservationChange change = newestFirst.next();
+            if (change.getSequence() <= sequence) {
+                break;
+            }
+            if (newerThanLimit-- <= 0) {
+                result.add(change);
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Run the listener on the notifier thread after new changes, until it is removed.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    private void append(ReservationChange.Type type, Long id, Reservation reservation) {
+        synchronized (this) {
+            changes.addLast(new ReservationChange(++lastSequence, type, id, reservation));
+            if (changes.size() > capacity) {
+                changes.removeFirst();
+            }
+        }
+        if (notificationPending.compareAndSet(false, true)) {
+            notifier.execute(this::notifyListeners);
+        }
+    }
+
+    private void notifyListeners() {
+        notificationPending.set(false);
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Change listener failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.marryat.service;
+
+import com.marryat.domain.Reservation;
+
+/**
+ * Thrown when a reservation overlaps an existing booking of the same room.
+ */
+public class ReservationConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long conflictingId;
+
+    public ReservationConflictException(Reservation reservation, Long conflictingId) {
+        super("Room " + reservation.getRoomNumber() + " is already booked between " + reservation.getStartDate() +
+                " and " + reservation.getEndDate() + " by reservation " + conflictingId);
+        this.conflictingId = conflictingId;
+    }
+
+    public Long getConflictingId() {
+        return conflictingId;
+    }
+}
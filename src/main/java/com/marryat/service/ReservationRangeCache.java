@@ -0,0 +1,154 @@
+package com.marryat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.marryat.config.ReservationProperties;
+import com.marryat.domain.Reservation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of the reservations of date ranges, evicting the least recently used ranges over the maximum size and
+ * ranges older than the time to live. Concurrent loads of the same range are coalesced into one, even with the cache
+ * disabled. Its hit, miss, eviction and coalesced load counts are published as metrics.
+ * <p>
+ * A changed reservation only invalidates the ranges it overlaps, of its room or of all the rooms of its hotel, so that
+ * writes leave the other ranges cached. Ranges loaded while an overlapping change gets committed are not cached, as
+ * they may have been read before it.
+ */
+@Component
+public class ReservationRangeCache implements PublicMetrics {
+    private static final String METRIC_PREFIX = "cache.reservation-ranges.";
+
+    private final boolean enabled;
+    private final Cache<Range, List<Reservation>> cache;
+    private final SingleFlight<Range, List<Reservation>> loads;
+
+    @Autowired
+    public ReservationRangeCache(ReservationProperties properties) {
+        ReservationProperties.RangeCache config = properties.getRangeCache();
+        this.enabled = config.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getTimeToLiveSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        this.loads = new SingleFlight<>(cache::invalidate);
+    }
+
+    /**
+     * Get the reservations of a range, loading them on a miss.
+     *
+     * @param hotelId    the hotel of the reservations
+     * @param roomNumber the room of the reservations, null for all rooms
+     * @param from       the first day of the range
+     * @param to         the last day of the range
+     * @param loader     the loader of the reservations from the database
+     * @return the unmodifiable list of reservations
+     */
+    public List<Reservation> get(Integer hotelId, Integer roomNumber, LocalDate from, LocalDate to,
+                                 Supplier<List<Reservation>> loader) {
+        Range range = new Range(hotelId, roomNumber, from, to);
+        if (!enabled) {
+            return loads.execute(range, () -> Collections.unmodifiableList(loader.get()));
+        }
+        List<Reservation> reservations = cache.getIfPresent(range);
+        if (reservations != null) {
+            return reservations;
+        }
+        return loads.execute(range, () -> {
+            List<Reservation> loaded = Collections.unmodifiableList(loader.get());
+            cache.put(range, loaded);
+            return loaded;
+        });
+    }
+
+    /**
+     * Drop the cached ranges a reservation overlaps, once its change is committed.
+     *
+     * @param hotelId    the hotel of the reservation
+     * @param roomNumber the room of the reservation
+     * @param startDate  the first day of the reservation
+     * @param endDate    the last day of the reservation
+     */
+    public void invalidate(Integer hotelId, Integer roomNumber, LocalDate startDate, LocalDate endDate) {
+        loads.forget(range -> range.overlaps(hotelId, roomNumber, startDate, endDate));
+        cache.asMap().keySet().removeIf(range -> range.overlaps(hotelId, roomNumber, startDate, endDate));
+    }
+
+    /**
+     * @return the hit, miss and eviction counts of the cache
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the number of loads that got the reservations loaded by a concurrent one
+     */
+    public long coalescedCount() {
+        return loads.coalescedCount();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats stats = cache.stats();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "size", cache.estimatedSize()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "hits", stats.hitCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "misses", stats.missCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "evictions", stats.evictionCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "coalesced", loads.coalescedCount()));
+        return metrics;
+    }
+
+    private static final class Range {
+        private final Integer hotelId;
+        private final Integer roomNumber;
+        private final LocalDate from;
+        private final LocalDate to;
+
+        private Range(Integer hotelId, Integer roomNumber, LocalDate from, LocalDate to) {
+            this.hotelId = hotelId;
+            this.roomNumber = roomNumber;
+            this.from = from;
+            this.to = to;
+        }
+
+        private boolean overlaps(Integer hotelId, Integer roomNumber, LocalDate startDate, LocalDate endDate) {
+            return Objects.equals(this.hotelId, hotelId)
+                    && (this.roomNumber == null || this.roomNumber.equals(roomNumber))
+                    && !startDate.isAfter(to) && !endDate.isBefore(from);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Range range = (Range) o;
+            return Objects.equals(hotelId, range.hotelId) && Objects.equals(roomNumber, range.roomNumber)
+                    && from.equals(range.from) && to.equals(range.to);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hotelId, roomNumber, from, to);
+        }
+    }
+}
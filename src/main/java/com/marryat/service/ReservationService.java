@@ -1,41 +1,233 @@
 package com.marryat.service;
 
+import com.marryat.config.HotelShards;
+import com.marryat.config.ReadWriteRoutingDataSource;
 import com.marryat.domain.Reservation;
+import com.marryat.repository.ArchivedReservationRepository;
 import com.marryat.repository.ReservationRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PostConstruct;
 import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-
+/**
+ * The reservations of every hotel are stored in the database of its shard: the operations on the reservations of one
+ * hotel route themselves to its shard, while the operations on the reservations of all hotels, such as
+ * {@link #findAll()} or {@link #archive(LocalDate, int)}, read the shard the calling thread runs on, within
+ * {@link HotelShards#onShard(int, java.util.function.Supplier)}.
+ */
 @Service
 public class ReservationService {
     private static final Logger LOGGER = LoggerFactory.getLogger(ReservationService.class);
+    private static final int INDEX_LOAD_PAGE_SIZE = 1000;
+    private static final Object ROLLBACK_ACTIONS = new Object();
+    // Stand for the missing bound of a half-open range, so that it is read by the query of a range
+    private static final LocalDate EARLIEST_DATE = LocalDate.of(1, 1, 1);
+    private static final LocalDate LATEST_DATE = LocalDate.of(9999, 12, 31);
 
     private final ReservationRepository reservationRepository;
+    private final ArchivedReservationRepository archivedReservationRepository;
+    private final RoomIntervalIndex intervalIndex;
+    private final RoomAvailabilityIndex availabilityIndex;
+    private final ReservationCache reservationCache;
+    private final ReservationRangeCache rangeCache;
+    private final RoomLocks roomLocks;
+    private final ReservationChangeLog changeLog;
+    private final HotelShards shards;
 
     @Autowired
-    public ReservationService(ReservationRepository reservationRepository) {
+    public ReservationService(ReservationRepository reservationRepository,
+                              ArchivedReservationRepository archivedReservationRepository,
+                              RoomIntervalIndex intervalIndex, RoomAvailabilityIndex availabilityIndex,
+                              ReservationCache reservationCache, ReservationRangeCache rangeCache,
+                              RoomLocks roomLocks, ReservationChangeLog changeLog, HotelShards shards) {
         this.reservationRepository = reservationRepository;
+        this.archivedReservationRepository = archivedReservationRepository;
+        this.intervalIndex = intervalIndex;
+        this.availabilityIndex = availabilityIndex;
+        this.reservationCache = reservationCache;
+        this.rangeCache = rangeCache;
+        this.roomLocks = roomLocks;
+        this.changeLog = changeLog;
+        this.shards = shards;
+    }
+
+    /**
+     * Build the room interval and availability indexes from the reservations already in the databases of all the
+     * shards. They are read from the primary database, as the reservations saved later are checked against them.
+     */
+    @PostConstruct
+    public void loadIndexes() {
+        for (int shard : shards.getShards()) {
+            List<Reservation> page = findIndexPage(shard, 0L);
+            while (!page.isEmpty()) {
+                page.forEach(reservation -> {
+                    intervalIndex.add(reservation);
+                    availabilityIndex.book(reservation);
+                });
+                page = findIndexPage(shard, page.get(page.size() - 1).getId());
+            }
+        }
+        LOGGER.debug("Indexed {} Reservations", intervalIndex.size());
+    }
+
+    private List<Reservation> findIndexPage(int shard, Long after) {
+        PageRequest page = new PageRequest(0, INDEX_LOAD_PAGE_SIZE);
+        return HotelShards.onShard(shard, () -> ReadWriteRoutingDataSource.onPrimary(
+                () -> reservationRepository.findByIdGreaterThanOrderByIdAsc(after, page)));
+    }
+
+    /**
+     * @param hotelId the hotel
+     * @return the shard holding the reservations of the hotel; the reservations saved together by
+     * {@link #saveAll(List)} must all be on the same shard
+     */
+    public int shardOf(Integer hotelId) {
+        return shards.shardOf(hotelId);
     }
 
     /**
-     * Create a reservation.
+     * Create a reservation, or update it if it has an ID. An update carrying a version only applies to that version
+     * of the reservation, and fails if the reservation no longer exists; one without version overwrites whichever
+     * version is current, or creates the reservation again. The room stays locked until
+     * the transaction completes, so that concurrent bookings of the same room are checked one after the other, and
+     * their changes logged in the order they are committed.
      *
      * @param reservation the entity to save
      * @return the persisted entity
+     * @throws ReservationConflictException if the room is already booked on any day of the reservation
+     * @throws OptimisticLockingFailureException if the version of the reservation is not the current one, or the
+     * reservation no longer exists
+     * @throws CannotAcquireLockException if the room stays locked by another transaction for too long
      */
+    @Transactional
     public Reservation save(Reservation reservation) {
         LOGGER.debug("Creating Reservation : {}", reservation);
-        return reservationRepository.save(reservation);
+        HotelShards.bindTransaction(shards.shardOf(reservation.getHotelId()));
+        if (reservation.getId() != null) {
+            Reservation stored = reservationRepository.findReservationById(reservation.getId(),
+                    reservation.getHotelId());
+            if (stored != null) {
+                // Also the room the reservation moves out of, which its concurrent deletes lock
+                roomLocks.lock(Arrays.asList(stored, reservation));
+            }
+            Long version = stored == null ? null : stored.getVersion();
+            if (reservation.getVersion() == null) {
+                if (version == null) {
+                    reservation.setId(null);
+                }
+                reservation.setVersion(version);
+            } else if (version == null) {
+                // Hibernate would insert the reservation under a new id rather than fail the version check
+                throw new OptimisticLockingFailureException("Reservation " + reservation.getId() +
+                        " no longer exists in hotel " + reservation.getHotelId());
+            }
+        }
+        roomLocks.lock(reservation.getHotelId(), reservation.getRoomNumber());
+        if (roomLocks.isDatabase()) {
+            checkDatabase(reservation);
+        }
+        RoomIntervalIndex.Claim claim = intervalIndex.claim(reservation);
+        Reservation result;
+        try {
+            result = reservationRepository.save(reservation);
+        } catch (RuntimeException e) {
+            intervalIndex.revert(claim);
+            throw e;
+        }
+        intervalIndex.confirm(claim, result.getId());
+        onRollback(() -> intervalIndex.revert(claim));
+        RoomAvailabilityIndex.Booking previous = availabilityIndex.book(result);
+        onRollback(() -> availabilityIndex.restore(result.getId(), previous));
+        afterCommit(() -> {
+            reservationCache.invalidate(shards.shardOf(result.getHotelId()), result.getId());
+            rangeCache.invalidate(result.getHotelId(), result.getRoomNumber(), result.getStartDate(),
+                    result.getEndDate());
+            if (previous != null) {
+                rangeCache.invalidate(previous.getHotelId(), previous.getRoomNumber(), previous.getStartDate(),
+                        previous.getEndDate());
+            }
+            changeLog.saved(result);
+        });
+        return result;
     }
 
     /**
-     * Get all the reservations.
+     * Create or update reservations in one transaction, so that their inserts and updates are sent in JDBC batches.
+     * A reservation overlapping another booking is skipped and reported, the others are saved. All the rooms of the
+     * batch, the ones the updated reservations move out of included, are locked upfront and in one go, so that they
+     * are taken in the same order as by the batches locking the same rooms.
+     *
+     * @param reservations the entities to save, of hotels of the same shard
+     * @return the result of every entity, in the same order
+     * @throws IllegalArgumentException if the hotels of the entities are on different shards
+     */
+    @Transactional
+    public List<BatchItemResult> saveAll(List<Reservation> reservations) {
+        LOGGER.debug("Saving {} Reservations", reservations.size());
+        Set<Integer> batchShards = reservations.stream().map(reservation -> shards.shardOf(reservation.getHotelId()))
+                .collect(Collectors.toSet());
+        if (batchShards.size() > 1) {
+            throw new IllegalArgumentException("The reservations of a batch are on the shards " + batchShards);
+        }
+        batchShards.forEach(HotelShards::bindTransaction);
+        List<Long> ids = reservations.stream().map(Reservation::getId).filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        List<Reservation> rooms = new ArrayList<>(reservations);
+        if (!ids.isEmpty()) {
+            rooms.addAll(reservationRepository.findReservationsByIdIn(ids));
+        }
+        roomLocks.lock(rooms);
+        List<BatchItemResult> results = new ArrayList<>(reservations.size());
+        for (int i = 0; i < reservations.size(); i++) {
+            Reservation reservation = reservations.get(i);
+            boolean create = reservation.getId() == null;
+            try {
+                Reservation result = save(reservation);
+                results.add(create ? BatchItemResult.created(i, result) : BatchItemResult.updated(i, result));
+            } catch (ReservationConflictException e) {
+                results.add(BatchItemResult.conflict(i, e));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Find the rooms of a hotel that are free on every day of a date range.
+     *
+     * @param hotelId the hotel
+     * @param from the first day of the range
+     * @param to the last day of the range
+     * @return the free room numbers, in ascending order
+     */
+    public List<Integer> findAvailableRooms(Integer hotelId, LocalDate from, LocalDate to) {
+        LOGGER.debug("Getting rooms of hotel {} available from {} to {}", hotelId, from, to);
+        return availabilityIndex.findAvailable(hotelId, from, to);
+    }
+
+    /**
+     * Get all the reservations of the current shard.
      *
      * @return the list of entities
      */
@@ -43,44 +235,410 @@ public class ReservationService {
     public List<Reservation> findAll() {
         LOGGER.debug("Getting all Reservations");
 
-        return reservationRepository.findAll();
+        return reservationRepository.findAllReservations();
     }
 
     /**
-     * Get one reservation by id.
+     * Get a page of the reservations of a hotel ordered by id, starting right after a known id.
      *
-     * @param id the id of the entity
-     * @return the entity
+     * @param hotelId the hotel
+     * @param after the id of the last reservation of the previous page, or null for the first page
+     * @param limit the maximum number of reservations to return
+     * @return the list of entities
      */
     @Transactional(readOnly = true)
-    public Reservation findOne(Long id) {
-        LOGGER.debug("Getting Reservation with id : {}", id);
-        return reservationRepository.findOne(id);
+    public List<Reservation> findAfter(Integer hotelId, Long after, int limit) {
+        LOGGER.debug("Getting {} Reservations of hotel {} after id : {}", limit, hotelId, after);
+        HotelShards.bindTransaction(shards.shardOf(hotelId));
+        return reservationRepository.findByHotelIdAndIdGreaterThanOrderByIdAsc(hotelId, after == null ? 0L : after,
+                new PageRequest(0, limit));
     }
 
     /**
-     * Delete the reservation by id.
+     * Pass all the reservations of a hotel to the consumer as they are fetched from a database cursor. The entities
+     * are not managed by the persistence context, so memory use doesn't grow with the number of reservations.
      *
+     * @param hotelId  the hotel
+     * @param consumer the consumer of the entities
+     */
+    @Transactional(readOnly = true)
+    public void streamAll(Integer hotelId, Consumer<Reservation> consumer) {
+        LOGGER.debug("Streaming all Reservations of hotel {}", hotelId);
+        HotelShards.bindTransaction(shards.shardOf(hotelId));
+        try (Stream<Reservation> reservations = reservationRepository.streamReservations(hotelId)) {
+            reservations.forEach(consumer);
+        }
+    }
+
+    /**
+     * Pass the matching reservations of a hotel to the consumer as they are fetched from forward-only database
+     * cursors, the archived ones first, each table in id order. The entities are not managed by the persistence
+     * context, so memory use doesn't grow with the number of reservations. Each table is read by the query of the
+     * filters given, so that it is searched by the room or the dates index rather than scanned.
+     *
+     * @param hotelId         the hotel
+     * @param roomNumber      the room of the reservations, null for all rooms
+     * @param from            the date the endDate should be later or equal to, null for no lower bound
+     * @param to              the date the startDate should be earlier or equal to, null for no upper bound
+     * @param includeArchived whether the archived reservations are passed too
+     * @param consumer        the consumer of the entities
+     */
+    @Transactional(readOnly = true)
+    public void streamMatching(Integer hotelId, Integer roomNumber, LocalDate from, LocalDate to,
+                               boolean includeArchived, Consumer<Reservation> consumer) {
+        LOGGER.debug("Streaming Reservations of hotel {} and room {} from {} to {}", hotelId, roomNumber, from, to);
+        HotelShards.bindTransaction(shards.shardOf(hotelId));
+        if (includeArchived) {
+            try (Stream<Reservation> reservations = streamArchived(hotelId, roomNumber, from, to)) {
+                reservations.forEach(consumer);
+            }
+        }
+        try (Stream<Reservation> reservations = streamCurrent(hotelId, roomNumber, from, to)) {
+            reservations.forEach(consumer);
+        }
+    }
+
+    private Stream<Reservation> streamCurrent(Integer hotelId, Integer roomNumber, LocalDate from, LocalDate to) {
+        if (from == null && to == null) {
+            return roomNumber == null ? reservationRepository.streamReservations(hotelId)
+                    : reservationRepository.streamReservationsOfRoom(hotelId, roomNumber);
+        }
+        LocalDate start = from == null ? EARLIEST_DATE : from;
+        LocalDate end = to == null ? LATEST_DATE : to;
+        return roomNumber == null ? reservationRepository.streamReservationsWithinDateRange(hotelId, start, end)
+                : reservationRepository.streamReservationsOfRoomWithinDateRange(hotelId, roomNumber, start, end);
+    }
+
+    private Stream<Reservation> streamArchived(Integer hotelId, Integer roomNumber, LocalDate from, LocalDate to) {
+        if (from == null && to == null) {
+            return roomNumber == null ? archivedReservationRepository.streamReservations(hotelId)
+                    : archivedReservationRepository.streamReservationsOfRoom(hotelId, roomNumber);
+        }
+        LocalDate start = from == null ? EARLIEST_DATE : from;
+        LocalDate end = to == null ? LATEST_DATE : to;
+        return roomNumber == null
+                ? archivedReservationRepository.streamReservationsWithinDateRange(hotelId, start, end)
+                : archivedReservationRepository.streamReservationsOfRoomWithinDateRange(hotelId, roomNumber, start,
+                end);
+    }
+
+    /**
+     * Get one reservation of a hotel by id. Outside of read-write transactions, which may see uncommitted changes,
+     * the reservation is read through the cache, so a cache hit doesn't even open a transaction.
+     *
+     * @param hotelId the hotel
+     * @param id the id of the entity
+     * @return the entity, or null if the hotel has none with the id
+     */
+    public Reservation findOne(Integer hotelId, Long id) {
+        LOGGER.debug("Getting Reservation of hotel {} with id : {}", hotelId, id);
+        int shard = shards.shardOf(hotelId);
+        Reservation reservation = HotelShards.onShard(shard, () -> readThroughCache()
+                ? reservationCache.get(shard, id, reservationRepository::findOne)
+                : reservationRepository.findOne(id));
+        return reservation != null && reservation.getHotelId().equals(hotelId) ? reservation : null;
+    }
+
+    /**
+     * Delete the reservation of a hotel by id, provided it is still at the expected version.
+     *
+     * @param hotelId the hotel
+     * @param id      the id of the entity
+     * @param version the expected version of the entity
+     * @return true if the entity got deleted, false if there is none with the id
+     * @throws OptimisticLockingFailureException if the entity is at another version
+     */
+    @Transactional
+    public boolean delete(Integer hotelId, Long id, Long version) {
+        LOGGER.debug("Deleting Reservation of hotel {} with id : {} and version : {}", hotelId, id, version);
+        HotelShards.bindTransaction(shards.shardOf(hotelId));
+        if (!lockRoomOf(hotelId, id)) {
+            return false;
+        }
+        if (reservationRepository.deleteByIdAndVersion(id, hotelId, version) == 0) {
+            if (reservationRepository.findVersionById(id, hotelId) != null) {
+                throw new OptimisticLockingFailureException("Reservation " + id + " is not at version " + version);
+            }
+            return false;
+        }
+        afterCommit(() -> {
+            evict(shards.shardOf(hotelId), id);
+            changeLog.deleted(id);
+        });
+        return true;
+    }
+
+    /**
+     * Delete the reservation of a hotel by id.
+     *
+     * @param hotelId the hotel
      * @param id the id of the entity
+     * @return true if the entity got deleted, false if there is none with the id
      */
-    public boolean delete(Long id) {
-        boolean deleted = false;
-        LOGGER.debug("Deleting Reservation with id : {}", id);
-        if (reservationRepository.exists(id)) {
-            reservationRepository.delete(id);
-            deleted = true;
+    @Transactional
+    public boolean delete(Integer hotelId, Long id) {
+        LOGGER.debug("Deleting Reservation of hotel {} with id : {}", hotelId, id);
+        HotelShards.bindTransaction(shards.shardOf(hotelId));
+        if (!lockRoomOf(hotelId, id) || reservationRepository.deleteReservationById(id, hotelId) == 0) {
+            return false;
         }
+        afterCommit(() -> {
+            evict(shards.shardOf(hotelId), id);
+            changeLog.deleted(id);
+        });
+        return true;
+    }
+
+    /**
+     * Delete the reservations of a hotel by id, in one statement, once their rooms are locked. Only the reservations
+     * found in the hotel are evicted from the indexes and logged, the ids being unique across hotels.
+     *
+     * @param hotelId the hotel
+     * @param ids the ids of the entities, unknown ones and the ones of other hotels being ignored
+     * @return the number of deleted entities
+     */
+    @Transactional
+    public int delete(Integer hotelId, Collection<Long> ids) {
+        LOGGER.debug("Deleting {} Reservations of hotel {}", ids.size(), hotelId);
+        HotelShards.bindTransaction(shards.shardOf(hotelId));
+        List<Reservation> stored = reservationRepository.findReservationsByIdInAndHotelId(ids, hotelId);
+        if (stored.isEmpty()) {
+            return 0;
+        }
+        roomLocks.lock(stored);
+        List<Long> found = stored.stream().map(Reservation::getId).collect(Collectors.toList());
+        int deleted = reservationRepository.deleteReservationsByIdIn(found);
+        afterCommit(() -> found.forEach(id -> {
+            evict(shards.shardOf(hotelId), id);
+            changeLog.deleted(id);
+        }));
         return deleted;
     }
 
     /**
-     * Find reservations by date range
+     * Lock the room the reservation is stored in, so that its delete is logged after the changes of the room committed
+     * before it.
      *
+     * @return false if the hotel has no reservation with the id
+     */
+    private boolean lockRoomOf(Integer hotelId, Long id) {
+        Reservation stored = reservationRepository.findReservationById(id, hotelId);
+        if (stored == null) {
+            return false;
+        }
+        roomLocks.lock(hotelId, stored.getRoomNumber());
+        return true;
+    }
+
+    /**
+     * Find reservations of a hotel by date range. Like {@link #findOne(Integer, Long)}, they are read through a cache
+     * outside of read-write transactions.
+     *
+     * @param hotelId the hotel
      * @param from the start of the date range
      * @param to the end of the date range
      * @return the list of reservations that are valid within the specified range
      */
-    public List<Reservation> findReservationsByDateRange(LocalDate from, LocalDate to) {
-        return reservationRepository.findReservationsWithinDateRange(from, to);
+    public List<Reservation> findReservationsByDateRange(Integer hotelId, LocalDate from, LocalDate to) {
+        return HotelShards.onShard(shards.shardOf(hotelId), () -> readThroughCache()
+                ? rangeCache.get(hotelId, null, from, to,
+                        () -> reservationRepository.findReservationsWithinDateRange(hotelId, from, to))
+                : reservationRepository.findReservationsWithinDateRange(hotelId, from, to));
+    }
+
+    /**
+     * Find reservations of a room by date range
+     *
+     * @param hotelId the hotel of the room
+     * @param roomNumber the room
+     * @param from the start of the date range
+     * @param to the end of the date range
+     * @return the list of reservations of the room that are valid within the specified range
+     */
+    public List<Reservation> findReservationsByDateRange(Integer hotelId, Integer roomNumber, LocalDate from,
+                                                         LocalDate to) {
+        return HotelShards.onShard(shards.shardOf(hotelId), () -> readThroughCache()
+                ? rangeCache.get(hotelId, roomNumber, from, to, () ->
+                        reservationRepository.findReservationsOfRoomWithinDateRange(hotelId, roomNumber, from, to))
+                : reservationRepository.findReservationsOfRoomWithinDateRange(hotelId, roomNumber, from, to));
+    }
+
+    /**
+     * Count the rooms booked on every day of the range, current and archived reservations alike. The dates of the
+     * reservations are read from cursors and added to the occupancy as they come, so memory use depends on the
+     * length of the range only.
+     *
+     * @param hotelId the hotel, or null for all the hotels of the current shard
+     * @param from the first day of the range
+     * @param to the last day of the range
+     * @return the occupancy of the range
+     */
+    @Transactional(readOnly = true)
+    public Occupancy countOccupancy(Integer hotelId, LocalDate from, LocalDate to) {
+        if (hotelId != null) {
+            HotelShards.bindTransaction(shards.shardOf(hotelId));
+        }
+        Occupancy occupancy = new Occupancy(from, to);
+        try (Stream<Object[]> stays = hotelId == null
+                ? reservationRepository.streamStaysWithinDateRange(from, to)
+                : reservationRepository.streamStaysOfHotelWithinDateRange(hotelId, from, to)) {
+            stays.forEach(stay -> occupancy.add((LocalDate) stay[0], (LocalDate) stay[1]));
+        }
+        try (Stream<Object[]> stays = hotelId == null
+                ? archivedReservationRepository.streamStaysWithinDateRange(from, to)
+                : archivedReservationRepository.streamStaysOfHotelWithinDateRange(hotelId, from, to)) {
+            stays.forEach(stay -> occupancy.add((LocalDate) stay[0], (LocalDate) stay[1]));
+        }
+        return occupancy;
+    }
+
+    /**
+     * Check the reservation against the bookings saved by all the nodes, which the in-memory index of this node may
+     * not know about.
+     */
+    private void checkDatabase(Reservation reservation) {
+        reservationRepository.findIdsOfRoomWithinDateRange(reservation.getHotelId(), reservation.getRoomNumber(),
+                reservation.getStartDate(), reservation.getEndDate()).stream()
+                .filter(id -> !id.equals(reservation.getId()))
+                .findFirst()
+                .ifPresent(id -> {
+                    throw new ReservationConflictException(reservation, id);
+                });
+    }
+
+    /**
+     * Move the oldest reservations of the current shard whose stay ended before the date into the archive, at most a
+     * batch of them. Their rooms are locked first, like for a delete, and the reservations updated to end later by
+     * then are left out; a batch whose reservations were not all moved, both copied and deleted, is rolled back.
+     *
+     * @param before    the date the stays ended before
+     * @param batchSize the maximum number of reservations to move
+     * @return the number of archived reservations, less than the batch size once there are no more to archive or
+     * when some were left out
+     * @throws OptimisticLockingFailureException if a reservation of the batch was updated while it was archived
+     * @throws CannotAcquireLockException if a room stays locked by another transaction for too long
+     */
+    @Transactional
+    public int archive(LocalDate before, int batchSize) {
+        List<Reservation> ended = reservationRepository.findReservationsEndingBefore(before,
+                new PageRequest(0, batchSize));
+        if (ended.isEmpty()) {
+            return 0;
+        }
+        roomLocks.lock(ended);
+        List<Long> ids = reservationRepository.findIdsByIdInEndingBefore(
+                ended.stream().map(Reservation::getId).collect(Collectors.toList()), before);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        LOGGER.debug("Archiving {} Reservations ended before {}", ids.size(), before);
+        int archived = archivedReservationRepository.archive(ids, before);
+        int deleted = reservationRepository.deleteReservationsByIdInEndingBefore(ids, before);
+        if (archived != ids.size() || deleted != ids.size()) {
+            throw new OptimisticLockingFailureException("Archived " + archived + " and deleted " + deleted +
+                    " of " + ids.size() + " Reservations ended before " + before);
+        }
+        int shard = HotelShards.currentShard();
+        afterCommit(() -> ids.forEach(id -> {
+            evict(shard, id);
+            changeLog.archived(id);
+        }));
+        return archived;
+    }
+
+    /**
+     * Find archived reservations of a hotel by date range
+     *
+     * @param hotelId the hotel
+     * @param from the start of the date range
+     * @param to the end of the date range
+     * @return the list of archived reservations that are valid within the specified range
+     */
+    @Transactional(readOnly = true)
+    public List<Reservation> findArchivedReservationsByDateRange(Integer hotelId, LocalDate from, LocalDate to) {
+        HotelShards.bindTransaction(shards.shardOf(hotelId));
+        return archivedReservationRepository.findReservationsWithinDateRange(hotelId, from, to);
+    }
+
+    /**
+     * Find archived reservations of a room by date range
+     *
+     * @param hotelId the hotel of the room
+     * @param roomNumber the room
+     * @param from the start of the date range
+     * @param to the end of the date range
+     * @return the list of archived reservations of the room that are valid within the specified range
+     */
+    @Transactional(readOnly = true)
+    public List<Reservation> findArchivedReservationsByDateRange(Integer hotelId, Integer roomNumber, LocalDate from,
+                                                                 LocalDate to) {
+        HotelShards.bindTransaction(shards.shardOf(hotelId));
+        return archivedReservationRepository.findReservationsOfRoomWithinDateRange(hotelId, roomNumber, from, to);
+    }
+
+    private void evict(int shard, Long id) {
+        intervalIndex.remove(id);
+        RoomAvailabilityIndex.Booking booking = availabilityIndex.remove(id);
+        reservationCache.invalidate(shard, id);
+        if (booking != null) {
+            rangeCache.invalidate(booking.getHotelId(), booking.getRoomNumber(), booking.getStartDate(),
+                    booking.getEndDate());
+        }
+    }
+
+    /**
+     * Read-write transactions may see uncommitted changes, and reads on the primary must not lag behind it, so
+     * neither reads from nor fills the caches.
+     */
+    private static boolean readThroughCache() {
+        return !ReadWriteRoutingDataSource.isPrimaryOnly()
+                && (!TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Actions registered within one transaction run in reverse order on rollback, so that a change undone after
+     * another change of the same transaction finds the state that change left.
+     */
+    private static void onRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Deque<Runnable> actions = (Deque<Runnable>) TransactionSynchronizationManager.getResource(ROLLBACK_ACTIONS);
+        if (actions == null) {
+            Deque<Runnable> transactionActions = new ArrayDeque<>();
+            TransactionSynchronizationManager.bindResource(ROLLBACK_ACTIONS, transactionActions);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public int getOrder() {
+                    // Undo the changes before the room locks are released
+                    return Ordered.LOWEST_PRECEDENCE - 1;
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResource(ROLLBACK_ACTIONS);
+                    if (status != STATUS_COMMITTED) {
+                        transactionActions.forEach(Runnable::run);
+                    }
+                }
+            });
+            actions = transactionActions;
+        }
+        actions.push(action);
     }
 }
@@ -0,0 +1,183 @@
+package com.marryat.service;
+
+import com.marryat.config.ReservationProperties;
+import com.marryat.domain.Reservation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory occupancy of the hotels: for every hotel and day, a bitmap of the rooms booked that day, indexed by room
+ * number. Every hotel has the same room inventory.
+ * <p>
+ * The free rooms of a range are the room inventory minus the union of the bitmaps of its days, so a query costs one
+ * bitmap operation per day of the range whatever the number of reservations.
+ * <p>
+ * Only the rooms of the inventory and the first {@value Reservation#MAX_STAY_DAYS} days of a stay are marked, so that
+ * the bitmaps stay bounded even for the rows stored before the room numbers and stays were limited.
+ */
+@Component
+public class RoomAvailabilityIndex {
+
+    private final BitSet inventory = new BitSet();
+    private final Map<Integer, Map<Long, BitSet>> bookedRoomsByHotel = new HashMap<>();
+    private final Map<Long, Booking> bookings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Autowired
+    public RoomAvailabilityIndex(ReservationProperties properties) {
+        inventory.set(1, properties.getRooms().getCount() + 1);
+    }
+
+    /**
+     * Mark the room of the reservation as booked on its days, freeing the days previously booked under the same id.
+     *
+     * @param reservation the persisted reservation
+     * @return the booking replaced by the reservation, or null if it is a new one
+     */
+    public Booking book(Reservation reservation) {
+        Booking booking = new Booking(reservation.getHotelId(), reservation.getRoomNumber(),
+                reservation.getStartDate().toEpochDay(), reservation.getEndDate().toEpochDay());
+        lock.writeLock().lock();
+        try {
+            Booking previous = bookings.put(reservation.getId(), booking);
+            if (previous != null) {
+                clear(previous);
+            }
+            mark(booking);
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Put back the booking a reservation replaced.
+     *
+     * @param id       the id of the reservation
+     * @param previous the booking returned when the reservation got booked, null to just free its days
+     * @return the booking the restored one replaced, or null if there was none
+     */
+    public Booking restore(Long id, Booking previous) {
+        lock.writeLock().lock();
+        try {
+            Booking current = previous == null ? bookings.remove(id) : bookings.put(id, previous);
+            if (current != null) {
+                clear(current);
+            }
+            if (previous != null) {
+                mark(previous);
+            }
+            return current;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Free the days booked by the reservation.
+     *
+     * @param id the id of the reservation
+     * @return the freed booking, or null if the reservation had none
+     */
+    public Booking remove(Long id) {
+        return restore(id, null);
+    }
+
+    /**
+     * Find the rooms of the inventory that are free on every day of the range.
+     *
+     * @param hotelId the hotel
+     * @param from    the first day of the range
+     * @param to      the last day of the range
+     * @return the free room numbers, in ascending order
+     */
+    public List<Integer> findAvailable(Integer hotelId, LocalDate from, LocalDate to) {
+        BitSet available = (BitSet) inventory.clone();
+        lock.readLock().lock();
+        try {
+            Map<Long, BitSet> bookedRoomsByDay = bookedRoomsByHotel.getOrDefault(hotelId, Collections.emptyMap());
+            for (long day = from.toEpochDay(); day <= to.toEpochDay() && !available.isEmpty(); day++) {
+                BitSet bookedRooms = bookedRoomsByDay.get(day);
+                if (bookedRooms != null) {
+                    available.andNot(bookedRooms);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return available.stream().boxed().collect(Collectors.toList());
+    }
+
+    private void mark(Booking booking) {
+        if (!inventory.get(booking.roomNumber)) {
+            return;
+        }
+        Map<Long, BitSet> bookedRoomsByDay = bookedRoomsByHotel.computeIfAbsent(booking.hotelId, h -> new HashMap<>());
+        for (long day = booking.firstDay; day <= lastIndexedDay(booking); day++) {
+            bookedRoomsByDay.computeIfAbsent(day, d -> new BitSet()).set(booking.roomNumber);
+        }
+    }
+
+    private void clear(Booking booking) {
+        if (!inventory.get(booking.roomNumber)) {
+            return;
+        }
+        Map<Long, BitSet> bookedRoomsByDay = bookedRoomsByHotel.getOrDefault(booking.hotelId, Collections.emptyMap());
+        for (long day = booking.firstDay; day <= lastIndexedDay(booking); day++) {
+            BitSet bookedRooms = bookedRoomsByDay.get(day);
+            if (bookedRooms != null) {
+                bookedRooms.clear(booking.roomNumber);
+                if (bookedRooms.isEmpty()) {
+                    bookedRoomsByDay.remove(day);
+                }
+            }
+        }
+    }
+
+    private static long lastIndexedDay(Booking booking) {
+        return Math.min(booking.lastDay, booking.firstDay + Reservation.MAX_STAY_DAYS - 1);
+    }
+
+    /**
+     * The hotel, room and days booked by a reservation.
+     */
+    public static final class Booking {
+        private final int hotelId;
+        private final int roomNumber;
+        private final long firstDay;
+        private final long lastDay;
+
+        private Booking(int hotelId, int roomNumber, long firstDay, long lastDay) {
+            this.hotelId = hotelId;
+            this.roomNumber = roomNumber;
+            this.firstDay = firstDay;
+            this.lastDay = lastDay;
+        }
+
+        public int getHotelId() {
+            return hotelId;
+        }
+
+        public int getRoomNumber() {
+            return roomNumber;
+        }
+
+        public LocalDate getStartDate() {
+            return LocalDate.ofEpochDay(firstDay);
+        }
+
+        public LocalDate getEndDate() {
+            return LocalDate.ofEpochDay(lastDay);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.marryat.service;
+
+import com.marryat.domain.Reservation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory index of the booked date intervals of every room, the rooms of each hotel apart.
+ * <p>
+ * The intervals of one room never overlap, so they are kept in a map sorted by start date and an overlap check is a
+ * single floor lookup: only the latest stay starting on or before the end of the requested interval can reach into it.
+ * Both bounds of an interval are inclusive.
+ */
+@Component
+public class RoomIntervalIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoomIntervalIndex.class);
+
+    private final ConcurrentMap<Room, NavigableMap<LocalDate, Stay>> rooms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Stay> stays = new ConcurrentHashMap<>();
+
+    /**
+     * Add an already persisted reservation without checking it, used when the index is built from the database.
+     *
+     * @param reservation the persisted reservation
+     */
+    public void add(Reservation reservation) {
+        Stay stay = new Stay(reservation);
+        NavigableMap<LocalDate, Stay> room = room(stay.room);
+        synchronized (room) {
+            Stay overlapping = findOverlap(room, stay.startDate, stay.endDate, null);
+            if (overlapping != null) {
+                LOGGER.warn("Reservation {} overlaps reservation {} in room {} of hotel {}", stay.id, overlapping.id,
+                        stay.room.roomNumber, stay.room.hotelId);
+            }
+            room.put(stay.startDate, stay);
+        }
+        stays.put(stay.id, stay);
+    }
+
+    /**
+     * Check whether the interval overlaps any booking of the room.
+     *
+     * @param hotelId    the hotel of the room
+     * @param roomNumber the room
+     * @param from       the first day of the interval
+     * @param to         the last day of the interval
+     * @return true if the room is booked on any day of the interval
+     */
+    public boolean overlaps(Integer hotelId, Integer roomNumber, LocalDate from, LocalDate to) {
+        NavigableMap<LocalDate, Stay> room = room(new Room(hotelId, roomNumber));
+        synchronized (room) {
+            return findOverlap(room, from, to, null) != null;
+        }
+    }
+
+    /**
+     * Book the interval of the reservation in its room, releasing the interval previously held under the same id.
+     * The claim has to be either confirmed once the reservation is persisted or reverted.
+     *
+     * @param reservation the reservation about to be saved
+     * @return the claim
+     * @throws ReservationConflictException if the interval overlaps another booking of the room
+     */
+    public Claim claim(Reservation reservation) {
+        Stay claimed = new Stay(reservation);
+        Stay released = claimed.id == null ? null : stays.get(claimed.id);
+        NavigableMap<LocalDate, Stay> room = room(claimed.room);
+        synchronized (room) {
+            Stay overlapping = findOverlap(room, claimed.startDate, claimed.endDate, claimed.id);
+            if (overlapping != null) {
+                throw new ReservationConflictException(reservation, overlapping.id);
+            }
+            if (released != null && released.room.equals(claimed.room)) {
+                room.remove(released.startDate, released);
+            }
+            room.put(claimed.startDate, claimed);
+        }
+        if (released != null && !released.room.equals(claimed.room)) {
+            removeFromRoom(released);
+        }
+        if (claimed.id != null) {
+            stays.put(claimed.id, claimed);
+        }
+        return new Claim(claimed, released);
+    }
+
+    /**
+     * Confirm a claim once its reservation got persisted.
+     *
+     * @param claim the claim
+     * @param id    the id of the persisted reservation
+     */
+    public void confirm(Claim claim, Long id) {
+        claim.claimed.id = id;
+        stays.put(id, claim.claimed);
+    }
+
+    /**
+     * Undo a claim, restoring the interval it released.
+     *
+     * @param claim the claim
+     */
+    public void revert(Claim claim) {
+        removeFromRoom(claim.claimed);
+        if (claim.claimed.id != null) {
+            stays.remove(claim.claimed.id, claim.claimed);
+        }
+        if (claim.released != null) {
+            NavigableMap<LocalDate, Stay> room = room(claim.released.room);
+            synchronized (room) {
+                room.put(claim.released.startDate, claim.released);
+            }
+            stays.put(claim.released.id, claim.released);
+        }
+    }
+
+    /**
+     * Release the interval booked by the reservation.
+     *
+     * @param id the id of the reservation
+     */
+    public void remove(Long id) {
+        Stay stay = stays.remove(id);
+        if (stay != null) {
+            removeFromRoom(stay);
+        }
+    }
+
+    /**
+     * @return the number of indexed reservations
+     */
+    public int size() {
+        return stays.size();
+    }
+
+    private void removeFromRoom(Stay stay) {
+        NavigableMap<LocalDate, Stay> room = room(stay.room);
+        synchronized (room) {
+            room.remove(stay.startDate, stay);
+        }
+    }
+
+    private NavigableMap<LocalDate, Stay> room(Room room) {
+        return rooms.computeIfAbsent(room, key -> new TreeMap<>());
+    }
+
+    private static Stay findOverlap(NavigableMap<LocalDate, Stay> room, LocalDate from, LocalDate to, Long ignoredId) {
+        Map.Entry<LocalDate, Stay> candidate = room.floorEntry(to);
+        if (candidate != null && ignoredId != null && ignoredId.equals(candidate.getValue().id)) {
+            candidate = room.lowerEntry(candidate.getKey());
+        }
+        return candidate != null && !candidate.getValue().endDate.isBefore(from) ? candidate.getValue() : null;
+    }
+
+    /**
+     * An interval booked in the index but not yet known to be persisted.
+     */
+    public static final class Claim {
+        private final Stay claimed;
+        private final Stay released;
+
+        private Claim(Stay claimed, Stay released) {
+            this.claimed = claimed;
+            this.released = released;
+        }
+    }
+
+    private static final class Stay {
+        private volatile Long id;
+        private final Room room;
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+
+        private Stay(Reservation reservation) {
+            this.id = reservation.getId();
+            this.room = new Room(reservation.getHotelId(), reservation.getRoomNumber());
+            this.startDate = reservation.getStartDate();
+            this.endDate = reservation.getEndDate();
+        }
+    }
+
+    private static final class Room {
+        private final Integer hotelId;
+        private final Integer roomNumber;
+
+        private Room(Integer hotelId, Integer roomNumber) {
+            this.hotelId = hotelId;
+            this.roomNumber = roomNumber;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Room room = (Room) o;
+            return Objects.equals(hotelId, room.hotelId) && Objects.equals(roomNumber, room.roomNumber);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hotelId, roomNumber);
+        }
+    }
+}
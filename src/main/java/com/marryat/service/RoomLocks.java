@@ -0,0 +1,235 @@
+package com.marryat.service;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.marryat.config.ReservationProperties;
+import com.marryat.domain.Reservation;
+import com.marryat.domain.RoomLock;
+import com.marryat.repository.RoomLockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Per-room write locks, so that the bookings of a room are checked and saved one transaction at a time while the
+ * bookings of other rooms proceed in parallel. A room is identified by its hotel and its number, as room numbers are
+ * only unique within a hotel.
+ * <p>
+ * Rooms are spread over a fixed number of striped locks, each held by a transaction until it completes. When
+ * database locking is enabled, the transaction also locks the row of each room in the {@code room_lock} table, which
+ * serializes the bookings of a room across all the application nodes. Every wait for a room locked by another
+ * transaction is timed by {@code timer.room-locks.wait} and counted by
+ * {@code counter.room-locks.contended.<hotel>.<room>}, which points at the hot rooms.
+ */
+@Component
+public class RoomLocks {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoomLocks.class);
+    private static final String CONTENDED_METRIC = "counter.room-locks.contended.";
+
+    private final ReentrantLock[] stripes;
+    private final long timeoutMillis;
+    private final boolean database;
+    private final RoomLockRepository roomLockRepository;
+    private final TransactionTemplate newTransaction;
+    private final MetricRegistry metricRegistry;
+    private final Timer waits;
+    private final Counter timeouts;
+
+    @Autowired
+    public RoomLocks(ReservationProperties properties, RoomLockRepository roomLockRepository,
+                     PlatformTransactionManager transactionManager, MetricRegistry metricRegistry) {
+        ReservationProperties.Locking config = properties.getLocking();
+        this.stripes = new ReentrantLock[config.getStripes()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.timeoutMillis = config.getTimeoutMillis();
+        this.database = config.isDatabase();
+        this.roomLockRepository = roomLockRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.metricRegistry = metricRegistry;
+        this.waits = metricRegistry.timer("timer.room-locks.wait");
+        this.timeouts = metricRegistry.counter("counter.room-locks.timeouts");
+    }
+
+    /**
+     * @return whether the rooms are also locked in the database, other nodes booking them concurrently
+     */
+    public boolean isDatabase() {
+        return database;
+    }
+
+    /**
+     * Lock a room until the current transaction completes.
+     *
+     * @param hotelId    the hotel of the room
+     * @param roomNumber the room
+     * @throws CannotAcquireLockException if the room stays locked by another transaction for longer than the timeout
+     * @see #lock(Collection)
+     */
+    public void lock(Integer hotelId, Integer roomNumber) {
+        lockRooms(Collections.singleton(new Room(hotelId, roomNumber)));
+    }
+
+    /**
+     * Lock the rooms of reservations until the current transaction completes. The rooms the transaction already locked
+     * are skipped, and the others are locked in a fixed order, so that transactions locking several rooms don't
+     * deadlock each other.
+     *
+     * @param reservations the reservations, of any hotels
+     * @throws CannotAcquireLockException if a room stays locked by another transaction for longer than the timeout
+     */
+    public void lock(Collection<Reservation> reservations) {
+        lockRooms(reservations.stream().map(reservation -> new Room(reservation.getHotelId(),
+                reservation.getRoomNumber())).collect(Collectors.toList()));
+    }
+
+    private void lockRooms(Collection<Room> candidates) {
+        Assert.state(TransactionSynchronizationManager.isSynchronizationActive(),
+                "Rooms can only be locked within a transaction");
+        HeldLocks held = heldLocks();
+        SortedSet<Room> rooms = new TreeSet<>(Room.ORDER);
+        candidates.stream().filter(room -> room.hotelId != null && room.roomNumber != null)
+                .filter(room -> !held.rooms.contains(room)).forEach(rooms::add);
+        if (rooms.isEmpty()) {
+            return;
+        }
+        SortedMap<Integer, Room> stripeRooms = new TreeMap<>();
+        rooms.forEach(room -> stripeRooms.putIfAbsent(Math.floorMod(room.hashCode(), stripes.length), room));
+        stripeRooms.forEach((stripe, room) -> {
+            ReentrantLock lock = stripes[stripe];
+            if (!lock.isHeldByCurrentThread()) {
+                acquire(lock, room);
+                held.stripes.add(lock);
+            }
+        });
+        if (database) {
+            createLockRows(rooms);
+            rooms.forEach(room -> roomLockRepository.findForUpdate(room.hotelId, room.roomNumber));
+        }
+        held.rooms.addAll(rooms);
+    }
+
+    private void acquire(ReentrantLock lock, Room room) {
+        if (lock.tryLock()) {
+            return;
+        }
+        metricRegistry.counter(CONTENDED_METRIC + room.hotelId + "." + room.roomNumber).inc();
+        boolean acquired;
+        Timer.Context wait = waits.time();
+        try {
+            acquired = lock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        } finally {
+            wait.stop();
+        }
+        if (!acquired) {
+            timeouts.inc();
+            throw new CannotAcquireLockException("Room " + room.roomNumber + " of hotel " + room.hotelId +
+                    " is still locked by another transaction");
+        }
+    }
+
+    /**
+     * Insert the missing lock rows, each in a transaction of its own so that the row of a room first booked by two
+     * nodes at once is created by one of them and locked by both.
+     */
+    private void createLockRows(Collection<Room> rooms) {
+        for (Room room : rooms) {
+            if (!roomLockRepository.exists(new RoomLock.Key(room.hotelId, room.roomNumber))) {
+                try {
+                    newTransaction.execute(status -> roomLockRepository.save(new RoomLock(room.hotelId,
+                            room.roomNumber)));
+                } catch (DataIntegrityViolationException e) {
+                    LOGGER.debug("Lock row of {} created concurrently : {}", room, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private HeldLocks heldLocks() {
+        HeldLocks held = (HeldLocks) TransactionSynchronizationManager.getResource(this);
+        if (held == null) {
+            HeldLocks transactionLocks = new HeldLocks();
+            TransactionSynchronizationManager.bindResource(this, transactionLocks);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResource(RoomLocks.this);
+                    transactionLocks.stripes.forEach(ReentrantLock::unlock);
+                }
+            });
+            held = transactionLocks;
+        }
+        return held;
+    }
+
+    private static final class HeldLocks {
+        private final Set<Room> rooms = new HashSet<>();
+        private final List<ReentrantLock> stripes = new ArrayList<>();
+    }
+
+    private static final class Room {
+        private static final Comparator<Room> ORDER = Comparator.comparing((Room room) -> room.hotelId)
+                .thenComparing(room -> room.roomNumber);
+
+        private final Integer hotelId;
+        private final Integer roomNumber;
+
+        private Room(Integer hotelId, Integer roomNumber) {
+            this.hotelId = hotelId;
+            this.roomNumber = roomNumber;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Room room = (Room) o;
+            return Objects.equals(hotelId, room.hotelId) && Objects.equals(roomNumber, room.roomNumber);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hotelId, roomNumber);
+        }
+
+        @Override
+        public String toString() {
+            return "room " + roomNumber + " of hotel " + hotelId;
+        }
+    }
+}
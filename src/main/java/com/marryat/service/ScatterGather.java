@@ -0,0 +1,75 @@
+package com.marryat.service;
+
+import com.marryat.config.HotelShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * The reports over the reservations of all the hotels: every shard is queried at once, each on a thread of its own,
+ * and the results of the shards are merged. With a single shard, the report is computed on the calling thread.
+ */
+@Component
+public class ScatterGather {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScatterGather.class);
+
+    private final ReservationService reservationService;
+    private final List<Integer> shards;
+    private final ExecutorService executor;
+
+    @Autowired
+    public ScatterGather(ReservationService reservationService, HotelShards hotelShards) {
+        this.reservationService = reservationService;
+        this.shards = hotelShards.getShards();
+        this.executor = Executors.newFixedThreadPool(shards.size(), new CustomizableThreadFactory("scatter-gather-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Count the rooms booked on every day of the range in all the hotels.
+     *
+     * @param from the first day of the range
+     * @param to   the last day of the range
+     * @return the occupancy of the range
+     * @see ReservationService#countOccupancy(Integer, LocalDate, LocalDate)
+     */
+    public Occupancy countOccupancy(LocalDate from, LocalDate to) {
+        LOGGER.debug("Counting the occupancy of {} shards from {} to {}", shards.size(), from, to);
+        if (shards.size() == 1) {
+            return HotelShards.onShard(shards.get(0), () -> reservationService.countOccupancy(null, from, to));
+        }
+        List<CompletableFuture<Occupancy>> scattered = shards.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() ->
+                        HotelShards.onShard(shard, () -> reservationService.countOccupancy(null, from, to)), executor))
+                .collect(Collectors.toList());
+        Occupancy occupancy = new Occupancy(from, to);
+        scattered.forEach(shard -> occupancy.merge(join(shard)));
+        return occupancy;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.marryat.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent calls: a call made while another one with the same key is running waits for it and
+ * gets its result, instead of querying the database again.
+ * <p>
+ * Once the data of a key changes, its running call is forgotten: later calls start a new one rather than getting a
+ * result that may have been read before the change, and the result of the forgotten call is passed to the callback
+ * undoing whatever the call cached.
+ *
+ * @param <K> the key of the calls
+ * @param <V> the result of the calls
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final Consumer<K> onForgotten;
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param onForgotten called with the key of a call forgotten while it was running, once it has returned
+     */
+    public SingleFlight(Consumer<K> onForgotten) {
+        this.onForgotten = onForgotten;
+    }
+
+    /**
+     * Run the call, or wait for the running call with the same key.
+     *
+     * @param key  the key of the call
+     * @param call the call
+     * @return the result of the call, or of the running one
+     */
+    public V execute(K key, Supplier<V> call) {
+        Flight<V> flight = new Flight<>();
+        Flight<V> running = flights.putIfAbsent(key, flight);
+        if (running != null) {
+            coalesced.increment();
+            return running.join();
+        }
+        try {
+            V result = call.get();
+            flight.result.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+            if (flight.forgotten) {
+                onForgotten.accept(key);
+            }
+        }
+    }
+
+    /**
+     * Forget the running calls of the keys whose data changed.
+     *
+     * @param keys the keys whose data changed
+     */
+    public void forget(Predicate<? super K> keys) {
+        flights.entrySet().removeIf(entry -> {
+            if (keys.test(entry.getKey())) {
+                entry.getValue().forgotten = true;
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * @return the number of calls that got the result of a running call
+     */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    private static final class Flight<V> {
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private volatile boolean forgotten;
+
+        private V join() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.marryat.aop;
+
+import com.codahale.metrics.MetricRegistry;
+import com.marryat.config.ReservationProperties;
+import com.marryat.controller.AsyncReservationController;
+import com.marryat.controller.RoomController;
+import com.marryat.domain.Reservation;
+import com.marryat.repository.ReservationRepository;
+import com.marryat.service.ReservationService;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MetricsAspectTest {
+    private static final LocalDate FROM = LocalDate.of(2017, 11, 10);
+    private static final LocalDate TO = LocalDate.of(2017, 11, 15);
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private ReservationRepository reservationRepository;
+    private ReservationService reservationService;
+
+    @Before
+    public void setUp() {
+        reservationRepository = mock(ReservationRepository.class);
+        reservationService = mock(ReservationService.class);
+    }
+
+    @Test
+    public void shouldTimeRepositoryCallsAndCountRows() {
+        when(reservationRepository.findReservationsWithinDateRange(1, FROM, TO))
+                .thenReturn(Arrays.asList(new Reservation(), new Reservation()));
+        ReservationRepository repository = proxy(reservationRepository);
+
+        repository.findReservationsWithinDateRange(1, FROM, TO);
+        repository.findOne(1L);
+
+        String name = "repository.ReservationRepository.findReservationsWithinDateRange";
+        assertEquals(1, metricRegistry.timer("timer." + name).getCount());
+        assertEquals(2, metricRegistry.histogram("histogram." + name + ".rows").getSnapshot().getMax());
+        assertEquals(1, metricRegistry.timer("timer.repository.ReservationRepository.findOne").getCount());
+    }
+
+    @Test
+    public void shouldCountRowsOfStreamWhenClosed() {
+        when(reservationRepository.streamReservationsOfRoom(1, 7))
+                .thenReturn(Stream.of(new Reservation(), new Reservation()));
+
+        try (Stream<Reservation> reservations = proxy(reservationRepository).streamReservationsOfRoom(1, 7)) {
+            reservations.forEach(reservation -> {
+            });
+        }
+
+        assertEquals(2, metricRegistry.histogram(
+                "histogram.repository.ReservationRepository.streamReservationsOfRoom.rows").getSnapshot().getMax());
+    }
+
+    @Test
+    public void shouldCountEndpointErrors() {
+        when(reservationService.findAvailableRooms(1, FROM, TO)).thenThrow(new IllegalStateException());
+        RoomController controller = proxy(new RoomController(reservationService));
+
+        try {
+            controller.getAvailableRooms(FROM, TO, 1);
+            fail("The endpoint should have failed");
+        } catch (IllegalStateException expected) {
+            // counted as an error
+        }
+        controller.getAvailableRooms(TO, FROM, 1);
+
+        String name = "controller.RoomController.getAvailableRooms";
+        assertEquals(2, metricRegistry.timer("timer." + name).getCount());
+        assertEquals(1, metricRegistry.counter("counter." + name + ".errors").getCount());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldTimeAsyncEndpointsUntilCompletion() {
+        when(reservationService.findOne(1, 1L)).thenReturn(null);
+        List<Runnable> tasks = new ArrayList<>();
+        AsyncReservationController controller = proxy(new AsyncReservationController(reservationService, null, null,
+                tasks::add, Optional.empty(), new ReservationProperties()));
+
+        controller.getReservation(1L, 1);
+
+        String name = "controller.AsyncReservationController.getReservation";
+        assertEquals(0, metricRegistry.timer("timer." + name).getCount());
+        tasks.forEach(Runnable::run);
+        assertEquals(1, metricRegistry.timer("timer." + name).getCount());
+        assertEquals(0, metricRegistry.counter("counter." + name + ".errors").getCount());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(T target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.addAspect(new MetricsAspect(metricRegistry));
+        return (T) factory.getProxy();
+    }
+}
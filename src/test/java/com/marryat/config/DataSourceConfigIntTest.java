@@ -0,0 +1,82 @@
+package com.marryat.config;
+
+import com.marryat.MarryatHotelsReservationsApplication;
+import com.marryat.domain.Reservation;
+import com.marryat.service.ReservationService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of the routing of the reservation service queries, against a second H2 database standing for the replica.
+ * The replica isn't replicated, so what is only in there tells which database a query ran on.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = MarryatHotelsReservationsApplication.class, properties = {
+        "reservations.replicas.enabled=true",
+        "reservations.replicas.urls=jdbc:h2:mem:marryat-hotels-reservations-replica"})
+public class DataSourceConfigIntTest {
+    private static final LocalDate FROM = LocalDate.of(2031, 3, 1);
+    private static final LocalDate TO = LocalDate.of(2031, 3, 5);
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private ReplicaSelector replicaSelector;
+
+    private JdbcTemplate replica;
+
+    private Reservation reservation;
+
+    @Before
+    public void setUp() {
+        replica = new JdbcTemplate(replicaSelector.dataSource("replica-0"));
+        replica.execute("CREATE TABLE IF NOT EXISTS reservation (id BIGINT PRIMARY KEY, end_date DATE NOT NULL," +
+                " first_name VARCHAR(255) NOT NULL, last_name VARCHAR(255) NOT NULL, room_number INTEGER NOT NULL," +
+                " start_date DATE NOT NULL, version BIGINT NOT NULL, hotel_id INTEGER NOT NULL)");
+        replica.update("INSERT INTO reservation VALUES (?, ?, 'Replica', 'Only', 1, ?, 0, 1)",
+                Long.MAX_VALUE, Date.valueOf(TO), Date.valueOf(FROM));
+
+        reservation = new Reservation();
+        reservation.setFirstName("Primary");
+        reservation.setLastName("Only");
+        reservation.setRoomNumber(2);
+        reservation.setStartDate(FROM);
+        reservation.setEndDate(TO);
+        reservationService.save(reservation);
+    }
+
+    @After
+    public void tearDown() {
+        replica.update("DELETE FROM reservation");
+        reservationService.delete(reservation.getHotelId(), reservation.getId());
+    }
+
+    @Test
+    public void shouldReadFromReplicaInReadOnlyTransactions() {
+        List<Reservation> reservations = reservationService.findReservationsByDateRange(1, FROM, TO);
+
+        assertThat(reservations).extracting(Reservation::getFirstName).containsExactly("Replica");
+    }
+
+    @Test
+    public void shouldWriteToPrimary() {
+        assertThat(replica.queryForObject("SELECT COUNT(*) FROM reservation WHERE first_name = 'Primary'",
+                Integer.class)).isEqualTo(0);
+        assertThat(ReadWriteRoutingDataSource.onPrimary(() -> reservationService.findReservationsByDateRange(1, FROM,
+                TO)))
+                .extracting(Reservation::getFirstName).containsExactly("Primary");
+    }
+}
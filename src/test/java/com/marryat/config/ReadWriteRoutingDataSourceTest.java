@@ -0,0 +1,114 @@
+package com.marryat.config;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Routing between two H2 databases standing for the primary and a replica, each holding its own name.
+ */
+public class ReadWriteRoutingDataSourceTest {
+
+    private SingleConnectionDataSource primary;
+    private SingleConnectionDataSource replicaDatabase;
+    private FailingDataSource replica;
+    private ReplicaSelector replicaSelector;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnlyTransaction;
+    private TransactionTemplate transaction;
+
+    @Before
+    public void setUp() {
+        primary = database("primary");
+        replicaDatabase = database("replica");
+        replica = new FailingDataSource(replicaDatabase);
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-0", replica);
+        replicaSelector = new ReplicaSelector(replicas, ReservationProperties.Replicas.Selection.ROUND_ROBIN);
+        DataSource dataSource = new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(primary, replicaSelector));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @After
+    public void tearDown() {
+        primary.destroy();
+        replicaDatabase.destroy();
+    }
+
+    @Test
+    public void shouldReadFromReplicaInReadOnlyTransaction() {
+        assertEquals("replica", readOnlyTransaction.execute(status -> name()));
+        assertEquals("primary", transaction.execute(status -> name()));
+        assertEquals("primary", name());
+    }
+
+    @Test
+    public void shouldReadFromPrimaryWhenAskedTo() {
+        assertEquals("primary", ReadWriteRoutingDataSource.onPrimary(() ->
+                readOnlyTransaction.execute(status -> name())));
+    }
+
+    @Test
+    public void shouldFallBackToPrimaryWhileReplicaIsDown() {
+        replica.down = true;
+
+        assertEquals("primary", readOnlyTransaction.execute(status -> name()));
+        assertTrue(replicaSelector.healthyReplicas().isEmpty());
+
+        replica.down = false;
+        assertEquals("primary", readOnlyTransaction.execute(status -> name()));
+        replicaSelector.checkHealth();
+        assertEquals(Collections.singletonList("replica-0"), replicaSelector.healthyReplicas());
+        assertEquals("replica", readOnlyTransaction.execute(status -> name()));
+    }
+
+    private String name() {
+        return jdbcTemplate.queryForObject("SELECT NAME FROM DATABASE_NAME", String.class);
+    }
+
+    private static SingleConnectionDataSource database(String name) {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource("jdbc:h2:mem:routing-" + name, true);
+        dataSource.setDriverClassName("org.h2.Driver");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE DATABASE_NAME (NAME VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO DATABASE_NAME VALUES (?)", name);
+        return dataSource;
+    }
+
+    private static final class FailingDataSource extends DelegatingDataSource {
+        private volatile boolean down;
+
+        private FailingDataSource(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) {
+                throw new SQLException("Connection refused");
+            }
+            return super.getConnection();
+        }
+    }
+}
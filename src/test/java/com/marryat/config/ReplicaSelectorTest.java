@@ -0,0 +1,41 @@
+package com.marryat.config;
+
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+public class ReplicaSelectorTest {
+
+    @Test
+    public void shouldSelectHealthyReplicasInTurn() {
+        ReplicaSelector selector = selector("replica-0", "replica-1", "replica-2");
+        selector.markDown("replica-1");
+
+        assertEquals("replica-0", selector.select());
+        assertEquals("replica-2", selector.select());
+        assertEquals("replica-2", selector.select());
+        assertEquals("replica-0", selector.select());
+    }
+
+    @Test
+    public void shouldSelectNoReplicaWhenAllAreDown() {
+        ReplicaSelector selector = selector("replica-0");
+        selector.markDown("replica-0");
+
+        assertNull(selector.select());
+    }
+
+    private static ReplicaSelector selector(String... names) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String name : names) {
+            replicas.put(name, mock(DataSource.class));
+        }
+        return new ReplicaSelector(replicas, ReservationProperties.Replicas.Selection.ROUND_ROBIN);
+    }
+}
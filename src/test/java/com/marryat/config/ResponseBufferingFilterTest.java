@@ -0,0 +1,158 @@
+package com.marryat.config;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResponseBufferingFilterTest {
+    private static final byte[] BODY = "[{\"id\":1}]".getBytes();
+
+    private final ResponseBufferingFilter filter = new ResponseBufferingFilter(BODY.length);
+
+    @Test
+    public void shouldSendResponseWithItsLength() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/reservations/list");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain(new FlushingServlet()));
+
+        assertThat(response.getContentLength()).isEqualTo(BODY.length);
+        assertThat(response.getContentAsByteArray()).isEqualTo(BODY);
+    }
+
+    @Test
+    public void shouldStreamResponseLargerThanBuffer() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/reservations");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                response.getOutputStream().write(BODY);
+                assertThat(response.isCommitted()).isFalse();
+                response.getOutputStream().write(BODY);
+                response.getOutputStream().flush();
+                assertThat(response.isCommitted()).isTrue();
+            }
+        }));
+
+        assertThat(response.getContentLength()).isEqualTo(0);
+        assertThat(response.getContentAsString()).isEqualTo(new String(BODY) + new String(BODY));
+    }
+
+    @Test
+    public void shouldNotBufferStreamedResponse() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/reservations/list");
+        request.setParameter("stream", "true");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain(new FlushingServlet()));
+
+        assertThat(response.getContentLength()).isEqualTo(0);
+        assertThat(response.isCommitted()).isTrue();
+        assertThat(response.getContentAsByteArray()).isEqualTo(BODY);
+    }
+
+    @Test
+    public void shouldNotBufferExport() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/reservations/export");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain(new FlushingServlet()));
+
+        assertThat(response.getContentLength()).isEqualTo(0);
+        assertThat(response.isCommitted()).isTrue();
+    }
+
+    @Test
+    public void shouldHandOverToContainerOnceWriteListenerIsSet() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/reservations");
+        MockHttpServletResponse mockResponse = new MockHttpServletResponse();
+        NonBlockingResponse response = new NonBlockingResponse(mockResponse);
+        WriteListener listener = new WriteListener() {
+            @Override
+            public void onWritePossible() {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        };
+
+        filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                response.getOutputStream().write(BODY, 0, 3);
+                assertThat(response.getOutputStream().isReady()).isTrue();
+                response.getOutputStream().setWriteListener(listener);
+                assertThat(mockResponse.getContentAsByteArray()).hasSize(3);
+                assertThat(response.getOutputStream().isReady()).isFalse();
+                response.getOutputStream().write(BODY, 3, BODY.length - 3);
+            }
+        }));
+
+        assertThat(response.writeListener).isSameAs(listener);
+        assertThat(mockResponse.getContentLength()).isEqualTo(0);
+        assertThat(mockResponse.getContentAsByteArray()).isEqualTo(BODY);
+    }
+
+    /**
+     * Response of a container writing asynchronously, not ready for more bytes once its listener is set.
+     */
+    private static class NonBlockingResponse extends HttpServletResponseWrapper {
+        private WriteListener writeListener;
+
+        NonBlockingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            ServletOutputStream outputStream = super.getOutputStream();
+            return new ServletOutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    outputStream.write(b);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return writeListener == null;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener listener) {
+                    writeListener = listener;
+                }
+            };
+        }
+    }
+
+    /**
+     * Writes and flushes the body, as the message converters do.
+     */
+    private static class FlushingServlet extends HttpServlet {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            response.getOutputStream().write(BODY);
+            response.getOutputStream().flush();
+        }
+    }
+}
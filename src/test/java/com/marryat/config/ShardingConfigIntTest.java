@@ -0,0 +1,131 @@
+package com.marryat.config;
+
+import com.marryat.MarryatHotelsReservationsApplication;
+import com.marryat.domain.Reservation;
+import com.marryat.service.ReservationConflictException;
+import com.marryat.service.ReservationService;
+import com.marryat.service.ScatterGather;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Test of the routing of the reservations to the shards of their hotels, against three H2 databases: hotel 1 is on
+ * shard 0, the primary, hotel 2 on shard 1 and hotel 3 on shard 2.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = MarryatHotelsReservationsApplication.class, properties = {
+        "reservations.shards.enabled=true",
+        "reservations.shards.urls=jdbc:h2:mem:marryat-hotels-reservations-shard-1;DB_CLOSE_ON_EXIT=FALSE," +
+                "jdbc:h2:mem:marryat-hotels-reservations-shard-2;DB_CLOSE_ON_EXIT=FALSE",
+        "reservations.shards.hotels.2=1",
+        "reservations.shards.hotels.3=2"})
+public class ShardingConfigIntTest {
+    private static final LocalDate FROM = LocalDate.of(2032, 4, 1);
+    private static final LocalDate TO = LocalDate.of(2032, 4, 5);
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private ScatterGather scatterGather;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private final List<Reservation> reservations = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        for (int hotelId = 1; hotelId <= 3; hotelId++) {
+            Reservation reservation = new Reservation();
+            reservation.setHotelId(hotelId);
+            reservation.setFirstName("Hotel");
+            reservation.setLastName("" + hotelId);
+            reservation.setRoomNumber(2);
+            reservation.setStartDate(FROM);
+            reservation.setEndDate(TO);
+            reservations.add(reservationService.save(reservation));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        reservations.forEach(reservation -> reservationService.delete(reservation.getHotelId(), reservation.getId()));
+    }
+
+    @Test
+    public void shouldStoreReservationsInShardOfTheirHotel() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        for (int shard = 0; shard <= 2; shard++) {
+            assertThat(HotelShards.onShard(shard, () -> jdbcTemplate.queryForList(
+                    "SELECT hotel_id FROM reservation WHERE start_date = ?", Integer.class, Date.valueOf(FROM))))
+                    .containsExactly(shard + 1);
+        }
+    }
+
+    @Test
+    public void shouldCountIdsFromBlockOfShard() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        for (int shard = 1; shard <= 2; shard++) {
+            assertThat(HotelShards.onShard(shard, () -> jdbcTemplate.queryForObject(
+                    "SELECT NEXT VALUE FOR " + Reservation.ID_SEQUENCE, Long.class)))
+                    .isGreaterThan(shard * HotelShards.ID_BLOCK);
+        }
+        assertThat(reservations).extracting(Reservation::getId).doesNotHaveDuplicates();
+    }
+
+    @Test
+    public void shouldReadReservationsOfHotelOnly() {
+        assertThat(reservationService.findReservationsByDateRange(2, FROM, TO))
+                .extracting(Reservation::getId).containsExactly(reservations.get(1).getId());
+        assertThat(reservationService.findReservationsByDateRange(3, 2, FROM, TO))
+                .extracting(Reservation::getId).containsExactly(reservations.get(2).getId());
+        assertThat(reservationService.findOne(3, reservations.get(1).getId())).isNull();
+        assertThat(reservationService.findOne(2, reservations.get(1).getId())).isNotNull();
+        assertThat(reservationService.findAvailableRooms(2, FROM, TO)).doesNotContain(2).contains(1);
+    }
+
+    @Test
+    public void shouldNotEvictReservationOfOtherHotelFromIndexes() {
+        assertThat(reservationService.delete(1, Arrays.asList(reservations.get(0).getId(),
+                reservations.get(1).getId()))).isEqualTo(1);
+
+        Reservation rebooking = new Reservation();
+        rebooking.setHotelId(2);
+        rebooking.setFirstName("Hotel");
+        rebooking.setLastName("2");
+        rebooking.setRoomNumber(2);
+        rebooking.setStartDate(FROM);
+        rebooking.setEndDate(TO);
+        try {
+            reservations.add(reservationService.save(rebooking));
+            fail("Room should still be booked");
+        } catch (ReservationConflictException e) {
+            assertThat(e.getConflictingId()).isEqualTo(reservations.get(1).getId());
+        }
+    }
+
+    @Test
+    public void shouldGatherOccupancyOfAllShards() {
+        assertThat(scatterGather.countOccupancy(FROM, TO).getRooms()).containsOnly(3);
+        assertThat(reservationService.countOccupancy(3, FROM, TO).getRooms()).containsOnly(1);
+    }
+}
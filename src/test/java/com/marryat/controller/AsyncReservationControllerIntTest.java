@@ -0,0 +1,169 @@
+package com.marryat.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.marryat.MarryatHotelsReservationsApplication;
+import com.marryat.config.ReservationProperties;
+import com.marryat.domain.Reservation;
+import com.marryat.service.ReservationService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.validation.Validator;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the AsyncReservationController. The requests run on other threads than the test, so the
+ * reservations are committed and deleted after each test.
+ *
+ * @see AsyncReservationController
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = MarryatHotelsReservationsApplication.class)
+public class AsyncReservationControllerIntTest {
+
+    private static final Integer ROOM_NUMBER = 90;
+    private static final LocalDate START_DATE = LocalDate.of(2030, 1, 10);
+    private static final LocalDate END_DATE = LocalDate.of(2030, 1, 14);
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ReservationProperties properties;
+
+    private ExecutorService executor;
+
+    private Reservation reservation;
+
+    @Before
+    public void setup() {
+        executor = Executors.newFixedThreadPool(2);
+        reservation = new Reservation();
+        reservation.setFirstName("John");
+        reservation.setLastName("Doe");
+        reservation.setRoomNumber(ROOM_NUMBER);
+        reservation.setStartDate(START_DATE);
+        reservation.setEndDate(END_DATE);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+        if (reservation.getId() != null) {
+            reservationService.delete(reservation.getHotelId(), reservation.getId());
+        }
+    }
+
+    @Test
+    public void shouldGetReservationAsynchronously() throws Exception {
+        reservationService.save(reservation);
+        MockMvc mockMvc = mockMvc(executor);
+
+        MvcResult result = mockMvc.perform(get("/reservations/{id}", reservation.getId()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"0\""))
+                .andExpect(jsonPath("$.id").value(reservation.getId().intValue()));
+    }
+
+    @Test
+    public void shouldFailOnCreateOverlappingReservationAsynchronously() throws Exception {
+        reservationService.save(reservation);
+        Reservation overlapping = new Reservation();
+        overlapping.setFirstName("Chuck");
+        overlapping.setLastName("Berry");
+        overlapping.setRoomNumber(ROOM_NUMBER);
+        overlapping.setStartDate(END_DATE);
+        overlapping.setEndDate(END_DATE.plusDays(2));
+        MockMvc mockMvc = mockMvc(executor);
+
+        MvcResult result = mockMvc.perform(post("/reservations")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(overlapping)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void shouldAnswerServiceUnavailableWhenExecutorIsSaturated() throws Exception {
+        MockMvc mockMvc = mockMvc(task -> {
+            throw new RejectedExecutionException("saturated");
+        });
+
+        MvcResult result = mockMvc.perform(get("/reservations/{id}", 1L))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    public void shouldCompleteWithErrorThrownByCall() throws Exception {
+        ReservationService failingService = mock(ReservationService.class);
+        when(failingService.findOne(Reservation.DEFAULT_HOTEL_ID, 1L)).thenThrow(new StackOverflowError());
+        AsyncReservationController controller = new AsyncReservationController(failingService, objectMapper,
+                validator, executor, Optional.empty(), properties);
+
+        CompletableFuture<?> result = controller.getReservation(1L, Reservation.DEFAULT_HOTEL_ID);
+
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            fail("Reservation lookup should fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(StackOverflowError.class);
+        }
+    }
+
+    private MockMvc mockMvc(Executor executor) {
+        AsyncReservationController controller = new AsyncReservationController(reservationService, objectMapper,
+                validator, executor, Optional.empty(), properties);
+        return MockMvcBuilders.standaloneSetup(controller)
+                .setMessageConverters(jacksonMessageConverter).build();
+    }
+}
@@ -0,0 +1,91 @@
+package com.marryat.controller;
+
+import com.marryat.MarryatHotelsReservationsApplication;
+import com.marryat.domain.Reservation;
+import com.marryat.service.ReservationService;
+import com.marryat.service.ScatterGather;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the ReportController.
+ *
+ * @see ReportController
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = MarryatHotelsReservationsApplication.class)
+public class ReportControllerIntTest {
+
+    private static final LocalDate FROM = LocalDate.of(1998, 11, 9);
+    private static final LocalDate TO = LocalDate.of(1998, 11, 15);
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private ScatterGather scatterGather;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    private MockMvc reportMockMvc;
+
+    @Before
+    public void setup() {
+        ReportController reportResource = new ReportController(reservationService, scatterGather);
+        this.reportMockMvc = MockMvcBuilders.standaloneSetup(reportResource)
+                .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @Test
+    @Transactional
+    public void shouldCountCurrentAndArchivedReservations() throws Exception {
+        save(7, LocalDate.of(1998, 11, 10), LocalDate.of(1998, 11, 14));
+        save(8, LocalDate.of(1998, 11, 12), LocalDate.of(1998, 11, 20));
+        reservationService.archive(LocalDate.of(1998, 11, 15), 10);
+
+        reportMockMvc.perform(get("/reports/occupancy?from={from}&to={to}", FROM.toString(), TO.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.from").value(FROM.toString()))
+                .andExpect(jsonPath("$.to").value(TO.toString()))
+                .andExpect(jsonPath("$.rooms").value(contains(0, 1, 1, 2, 2, 2, 1)));
+    }
+
+    @Test
+    public void shouldFailOnPeriodEndingBeforeStart() throws Exception {
+        reportMockMvc.perform(get("/reports/occupancy?from={from}&to={to}", TO.toString(), FROM.toString()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void shouldFailOnTooLongPeriod() throws Exception {
+        reportMockMvc.perform(get("/reports/occupancy?from={from}&to={to}", FROM.toString(),
+                FROM.plusDays(ReportController.MAX_REPORT_DAYS).toString()))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void save(int roomNumber, LocalDate startDate, LocalDate endDate) {
+        Reservation reservation = new Reservation();
+        reservation.setFirstName("John");
+        reservation.setLastName("Doe");
+        reservation.setRoomNumber(roomNumber);
+        reservation.setStartDate(startDate);
+        reservation.setEndDate(endDate);
+        reservationService.save(reservation);
+    }
+}
@@ -0,0 +1,134 @@
+package com.marryat.controller;
+
+import com.marryat.MarryatHotelsReservationsApplication;
+import com.marryat.config.ReservationProperties;
+import com.marryat.domain.Reservation;
+import com.marryat.service.ReservationChangeLog;
+import com.marryat.service.ReservationService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.marryat.controller.ReservationController.NEXT_CURSOR_HEADER;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the ReservationChangeController. The reservations are saved and deleted outside of test
+ * transactions, as only committed changes are fed.
+ *
+ * @see ReservationChangeController
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = MarryatHotelsReservationsApplication.class)
+public class ReservationChangeControllerIntTest {
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private ReservationChangeLog changeLog;
+
+    @Autowired
+    private ReservationProperties properties;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    private MockMvc changeMockMvc;
+
+    private final List<Long> saved = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        ReservationChangeController changeResource = new ReservationChangeController(changeLog, properties);
+        this.changeMockMvc = MockMvcBuilders.standaloneSetup(changeResource)
+                .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @After
+    public void tearDown() {
+        saved.forEach(id -> reservationService.delete(Reservation.DEFAULT_HOTEL_ID, id));
+    }
+
+    @Test
+    public void shouldGetChangesAfterCursor() throws Exception {
+        long cursor = changeLog.getLastSequence();
+        changeMockMvc.perform(asyncDispatch(changeMockMvc.perform(get("/reservations/changes")).andReturn()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(NEXT_CURSOR_HEADER, String.valueOf(cursor)))
+                .andExpect(jsonPath("$").isEmpty());
+
+        Reservation reservation = save();
+        reservationService.delete(reservation.getHotelId(), reservation.getId());
+
+        changeMockMvc.perform(asyncDispatch(changeMockMvc.perform(get("/reservations/changes?since={since}",
+                cursor)).andReturn()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(NEXT_CURSOR_HEADER, String.valueOf(cursor + 2)))
+                .andExpect(jsonPath("$.[0].sequence").value(cursor + 1))
+                .andExpect(jsonPath("$.[0].type").value("SAVED"))
+                .andExpect(jsonPath("$.[0].reservation.id").value(reservation.getId().intValue()))
+                .andExpect(jsonPath("$.[0].reservation.version").value(0))
+                .andExpect(jsonPath("$.[1].sequence").value(cursor + 2))
+                .andExpect(jsonPath("$.[1].type").value("DELETED"))
+                .andExpect(jsonPath("$.[1].id").value(reservation.getId().intValue()));
+    }
+
+    @Test
+    public void shouldWaitForNextChange() throws Exception {
+        long cursor = changeLog.getLastSequence();
+        MvcResult poll = changeMockMvc.perform(get("/reservations/changes?since={since}", cursor))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        Reservation reservation = save();
+
+        changeMockMvc.perform(asyncDispatch(poll))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].type").value("SAVED"))
+                .andExpect(jsonPath("$.[0].reservation.id").value(reservation.getId().intValue()));
+    }
+
+    @Test
+    public void shouldFailOnCursorOfUnknownChanges() throws Exception {
+        changeMockMvc.perform(asyncDispatch(changeMockMvc.perform(get("/reservations/changes?since={since}",
+                changeLog.getLastSequence() + 1)).andReturn()))
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    public void shouldFailOnInvalidLimit() throws Exception {
+        changeMockMvc.perform(asyncDispatch(changeMockMvc.perform(get("/reservations/changes?limit=0"))
+                .andReturn()))
+                .andExpect(status().isBadRequest());
+    }
+
+    private Reservation save() {
+        Reservation reservation = new Reservation();
+        reservation.setFirstName("John");
+        reservation.setLastName("Doe");
+        reservation.setRoomNumber(11);
+        reservation.setStartDate(LocalDate.of(2034, 3, 1));
+        reservation.setEndDate(LocalDate.of(2034, 3, 3));
+        Reservation result = reservationService.save(reservation);
+        saved.add(result.getId());
+        return result;
+    }
+}
@@ -1,7 +1,10 @@
 package com.marryat.controller;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.marryat.MarryatHotelsReservationsApplication;
+import com.marryat.config.ReservationProperties;
+import com.marryat.config.SmileHttpMessageConverter;
 import com.marryat.domain.Reservation;
 import com.marryat.repository.ReservationRepository;
 import com.marryat.service.ReservationService;
@@ -12,6 +15,7 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -20,13 +24,20 @@ import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.validation.Validator;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.Matchers.describedAs;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.hasItem;
 import static org.junit.Assert.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
@@ -34,6 +45,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -70,9 +82,23 @@ public class ReservationControllerIntTest {
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ReservationProperties properties;
+
     @Autowired
     private PageableHandlerMethodArgumentResolver pageableArgumentResolver;
 
+    @Autowired
+    private EntityManager em;
+
+    private final SmileHttpMessageConverter smileMessageConverter = new SmileHttpMessageConverter();
+
     private MockMvc reservationMockMvc;
 
     private Reservation reservation;
@@ -80,10 +106,12 @@ public class ReservationControllerIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        ReservationController reservationResource = new ReservationController(reservationService);
+        ReservationController reservationResource = new ReservationController(reservationService, objectMapper,
+                validator, Optional.empty(), properties);
         this.reservationMockMvc = MockMvcBuilders.standaloneSetup(reservationResource)
                 .setCustomArgumentResolvers(pageableArgumentResolver)
-                .setMessageConverters(jacksonMessageConverter).build();
+                .setControllerAdvice(new ReservationFieldsAdvice())
+                .setMessageConverters(jacksonMessageConverter, smileMessageConverter).build();
     }
 
     @Before
@@ -135,6 +163,143 @@ public class ReservationControllerIntTest {
         assertThat(reservationList).hasSize(databaseSizeBeforeCreate);
     }
 
+    @Test
+    @Transactional
+    public void shouldFailOnCreateOverlappingReservation() throws Exception {
+        reservationService.save(reservation);
+        int databaseSizeBeforeCreate = reservationRepository.findAll().size();
+
+        Reservation overlappingReservation = new Reservation();
+        overlappingReservation.setFirstName(UPDATED_FIRST_NAME);
+        overlappingReservation.setLastName(UPDATED_LAST_NAME);
+        overlappingReservation.setRoomNumber(DEFAULT_ROOM_NUMBER);
+        overlappingReservation.setStartDate(DEFAULT_END_DATE);
+        overlappingReservation.setEndDate(UPDATED_END_DATE);
+
+        reservationMockMvc.perform(post("/reservations")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(overlappingReservation)))
+                .andExpect(status().isConflict());
+
+        List<Reservation> reservationList = reservationRepository.findAll();
+        assertThat(reservationList).hasSize(databaseSizeBeforeCreate);
+    }
+
+    @Test
+    @Transactional
+    public void shouldSaveBatchOfReservations() throws Exception {
+        reservationService.save(reservation);
+        int databaseSizeBeforeCreate = reservationRepository.findAll().size();
+
+        Reservation updatedReservation = reservationRepository.findOne(reservation.getId());
+        // Disconnect from session so that the updates on updatedReservation are not directly saved in db
+        em.detach(updatedReservation);
+        updatedReservation.setFirstName(UPDATED_FIRST_NAME);
+        Reservation newReservation = new Reservation();
+        newReservation.setFirstName(UPDATED_FIRST_NAME);
+        newReservation.setLastName(UPDATED_LAST_NAME);
+        newReservation.setRoomNumber(UPDATED_ROOM_NUMBER);
+        newReservation.setStartDate(UPDATED_START_DATE);
+        newReservation.setEndDate(UPDATED_END_DATE);
+        Reservation overlappingReservation = new Reservation();
+        overlappingReservation.setFirstName(DEFAULT_FIRST_NAME);
+        overlappingReservation.setLastName(DEFAULT_LAST_NAME);
+        overlappingReservation.setRoomNumber(UPDATED_ROOM_NUMBER);
+        overlappingReservation.setStartDate(UPDATED_START_DATE);
+        overlappingReservation.setEndDate(UPDATED_START_DATE);
+
+        reservationMockMvc.perform(post("/reservations/batch")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(Arrays.asList(updatedReservation, newReservation,
+                        overlappingReservation))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].outcome").value("UPDATED"))
+                .andExpect(jsonPath("$.[0].id").value(reservation.getId().intValue()))
+                .andExpect(jsonPath("$.[1].outcome").value("CREATED"))
+                .andExpect(jsonPath("$.[2].outcome").value("CONFLICT"));
+
+        List<Reservation> reservationList = reservationRepository.findAll();
+        assertThat(reservationList).hasSize(databaseSizeBeforeCreate + 1);
+        assertThat(reservationRepository.findOne(reservation.getId()).getFirstName()).isEqualTo(UPDATED_FIRST_NAME);
+    }
+
+    @Test
+    @Transactional
+    public void shouldImportReservationsFromNdjson() throws Exception {
+        int databaseSizeBeforeImport = reservationRepository.findAll().size();
+        String body = "{\"firstName\":\"John\",\"lastName\":\"Doe\",\"roomNumber\":1," +
+                "\"startDate\":\"2017-11-10\",\"endDate\":\"2017-11-14\"}\n" +
+                "\n" +
+                "{\"firstName\":\"Chuck\",\"lastName\":\"Berry\",\"roomNumber\":1," +
+                "\"startDate\":\"2017-11-14\",\"endDate\":\"2017-11-15\"}\n" +
+                "{\"lastName\":\"Berry\",\"roomNumber\":2," +
+                "\"startDate\":\"2017-11-14\",\"endDate\":\"2017-11-15\"}\n" +
+                "{\"firstName\":\n" +
+                "{\"id\":123456,\"firstName\":\"Chuck\",\"lastName\":\"Berry\",\"roomNumber\":2," +
+                "\"startDate\":\"2017-11-14\",\"endDate\":\"2017-11-15\"}\n";
+
+        reservationMockMvc.perform(post("/reservations/import")
+                .contentType("application/x-ndjson")
+                .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(5))
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.rejected").value(3))
+                .andExpect(jsonPath("$.errors.[0].index").value(4))
+                .andExpect(jsonPath("$.errors.[0].outcome").value("INVALID"))
+                .andExpect(jsonPath("$.errors.[0].message").value("firstName may not be null"))
+                .andExpect(jsonPath("$.errors.[1].index").value(5))
+                .andExpect(jsonPath("$.errors.[1].outcome").value("INVALID"))
+                .andExpect(jsonPath("$.errors.[2].index").value(3))
+                .andExpect(jsonPath("$.errors.[2].outcome").value("CONFLICT"));
+
+        assertThat(reservationRepository.findAll()).hasSize(databaseSizeBeforeImport + 2);
+        assertThat(reservationRepository.findOne(123456L)).isNull();
+    }
+
+    @Test
+    @Transactional
+    public void shouldImportReservationsFromCsv() throws Exception {
+        String body = "lastName,firstName,roomNumber,startDate,endDate\n" +
+                "\"O'Hara, \"\"Scarlett\"\"\",Katie,3,2017-11-10,2017-11-14\n" +
+                "Doe,John,3,2017-11-20\n";
+
+        reservationMockMvc.perform(post("/reservations/import")
+                .contentType("text/csv")
+                .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(2))
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.errors.[0].index").value(3))
+                .andExpect(jsonPath("$.errors.[0].message").value(
+                        "unreadable reservation: 4 values for 5 columns"));
+
+        assertThat(reservationService.findReservationsByDateRange(Reservation.DEFAULT_HOTEL_ID, 3, DEFAULT_START_DATE,
+                DEFAULT_END_DATE))
+                .extracting(Reservation::getLastName).containsExactly("O'Hara, \"Scarlett\"");
+    }
+
+    @Test
+    @Transactional
+    public void shouldFailOnBatchWithInvalidReservation() throws Exception {
+        int databaseSizeBeforeCreate = reservationRepository.findAll().size();
+        Reservation invalidReservation = new Reservation();
+        invalidReservation.setRoomNumber(UPDATED_ROOM_NUMBER);
+        invalidReservation.setStartDate(UPDATED_END_DATE);
+        invalidReservation.setEndDate(UPDATED_START_DATE);
+
+        reservationMockMvc.perform(post("/reservations/batch")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(Arrays.asList(reservation, invalidReservation))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.[0].index").value(1))
+                .andExpect(jsonPath("$.[0].outcome").value("INVALID"))
+                .andExpect(jsonPath("$.[0].message").value("firstName may not be null, lastName may not be null"));
+
+        List<Reservation> reservationList = reservationRepository.findAll();
+        assertThat(reservationList).hasSize(databaseSizeBeforeCreate);
+    }
+
     @Test
     @Transactional
     public void shouldFailOnFirstNameMissing() throws Exception {
@@ -221,6 +386,48 @@ public class ReservationControllerIntTest {
         assertThat(reservationList).hasSize(databaseSizeBeforeTest);
     }
 
+    @Test
+    @Transactional
+    public void shouldFailOnRoomOutsideInventory() throws Exception {
+        int databaseSizeBeforeTest = reservationRepository.findAll().size();
+        reservation.setRoomNumber(properties.getRooms().getCount() + 1);
+
+        reservationMockMvc.perform(post("/reservations")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(reservation)))
+                .andExpect(status().isBadRequest());
+        reservationMockMvc.perform(post("/reservations/batch")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(Collections.singletonList(reservation))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.[0].message").value("roomNumber must be less than or equal to " +
+                        properties.getRooms().getCount()));
+
+        List<Reservation> reservationList = reservationRepository.findAll();
+        assertThat(reservationList).hasSize(databaseSizeBeforeTest);
+    }
+
+    @Test
+    @Transactional
+    public void shouldFailOnStayLongerThanMaximum() throws Exception {
+        int databaseSizeBeforeTest = reservationRepository.findAll().size();
+        reservation.setEndDate(DEFAULT_START_DATE.plusDays(Reservation.MAX_STAY_DAYS));
+
+        reservationMockMvc.perform(post("/reservations")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(reservation)))
+                .andExpect(status().isBadRequest());
+
+        reservation.setEndDate(DEFAULT_START_DATE.plusDays(Reservation.MAX_STAY_DAYS - 1));
+        reservationMockMvc.perform(post("/reservations")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(reservation)))
+                .andExpect(status().isCreated());
+
+        List<Reservation> reservationList = reservationRepository.findAll();
+        assertThat(reservationList).hasSize(databaseSizeBeforeTest + 1);
+    }
+
     @Test
     @Transactional
     public void shouldGetAllReservations() throws Exception {
@@ -232,6 +439,53 @@ public class ReservationControllerIntTest {
         expectListContainsReservation(resultActions, reservation);
     }
 
+    @Test
+    @Transactional
+    public void shouldPageThroughReservationsById() throws Exception {
+        reservationRepository.saveAndFlush(reservation);
+        Reservation nextReservation = new Reservation();
+        nextReservation.setFirstName(UPDATED_FIRST_NAME);
+        nextReservation.setLastName(UPDATED_LAST_NAME);
+        nextReservation.setRoomNumber(UPDATED_ROOM_NUMBER);
+        nextReservation.setStartDate(UPDATED_START_DATE);
+        nextReservation.setEndDate(UPDATED_END_DATE);
+        reservationRepository.saveAndFlush(nextReservation);
+
+        ResultActions firstPage = reservationMockMvc.perform(get("/reservations/list?after={after}&limit=1",
+                reservation.getId() - 1))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ReservationController.NEXT_CURSOR_HEADER, reservation.getId().toString()));
+        expectListContainsReservation(firstPage, reservation);
+        expectListContainsNoReservation(firstPage, nextReservation);
+
+        ResultActions secondPage = reservationMockMvc.perform(get("/reservations/list?after={after}&limit=2",
+                reservation.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ReservationController.NEXT_CURSOR_HEADER));
+        expectListContainsReservation(secondPage, nextReservation);
+        expectListContainsNoReservation(secondPage, reservation);
+    }
+
+    @Test
+    @Transactional
+    public void shouldFailOnPageLimitOutOfRange() throws Exception {
+        reservationMockMvc.perform(get("/reservations/list?limit=0"))
+                .andExpect(status().isBadRequest());
+        reservationMockMvc.perform(get("/reservations/list?limit={limit}", ReservationController.MAX_PAGE_SIZE + 1))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void shouldStreamAllReservations() throws Exception {
+        reservationRepository.saveAndFlush(reservation);
+
+        ResultActions resultActions = reservationMockMvc.perform(get("/reservations/list?stream=true"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE));
+        expectListContainsReservation(resultActions, reservation);
+    }
+
     @Test
     @Transactional
     public void shouldFilterOutReservationsByStartDate() throws Exception {
@@ -266,6 +520,152 @@ public class ReservationControllerIntTest {
 
     }
 
+    @Test
+    @Transactional
+    public void shouldFindReservationsOverlappingRange() throws Exception {
+        reservationRepository.saveAndFlush(reservation);
+        Reservation otherRoomReservation = new Reservation();
+        otherRoomReservation.setFirstName(UPDATED_FIRST_NAME);
+        otherRoomReservation.setLastName(UPDATED_LAST_NAME);
+        otherRoomReservation.setRoomNumber(UPDATED_ROOM_NUMBER);
+        otherRoomReservation.setStartDate(DEFAULT_START_DATE.plusDays(2));
+        otherRoomReservation.setEndDate(UPDATED_END_DATE);
+        reservationRepository.saveAndFlush(otherRoomReservation);
+
+        // Both stays began before the range and are still running
+        ResultActions response = reservationMockMvc.perform(get("/reservations?from={from}&to={to}",
+                DEFAULT_END_DATE.toString(), UPDATED_START_DATE.toString()));
+        expectListContainsReservation(response, reservation);
+        expectListContainsReservation(response, otherRoomReservation);
+
+        response = reservationMockMvc.perform(get("/reservations?from={from}&to={to}&roomNumber={roomNumber}",
+                DEFAULT_END_DATE.toString(), UPDATED_START_DATE.toString(), UPDATED_ROOM_NUMBER));
+        expectListContainsReservation(response, otherRoomReservation);
+        expectListContainsNoReservation(response, reservation);
+
+        response = reservationMockMvc.perform(get("/reservations?from={from}&to={to}",
+                UPDATED_START_DATE.toString(), UPDATED_END_DATE.toString()));
+        expectListContainsReservation(response, otherRoomReservation);
+        expectListContainsNoReservation(response, reservation);
+    }
+
+    @Test
+    @Transactional
+    public void shouldGetOnlyRequestedFieldsOfReservations() throws Exception {
+        reservationRepository.saveAndFlush(reservation);
+
+        reservationMockMvc.perform(get("/reservations?from={from}&to={to}&fields=id, roomNumber,startDate,endDate",
+                DEFAULT_START_DATE.toString(), DEFAULT_END_DATE.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*].id").value(hasItem(reservation.getId().intValue())))
+                .andExpect(jsonPath("$.[*].roomNumber").value(hasItem(DEFAULT_ROOM_NUMBER)))
+                .andExpect(jsonPath("$.[*].startDate").value(hasItem(DEFAULT_START_DATE.toString())))
+                .andExpect(jsonPath("$.[*].endDate").value(hasItem(DEFAULT_END_DATE.toString())))
+                .andExpect(jsonPath("$.[*].firstName").value(empty()))
+                .andExpect(jsonPath("$.[*].version").value(empty()));
+
+        reservationMockMvc.perform(get("/reservations/list?after={after}&fields=id", reservation.getId() - 1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].id").value(reservation.getId().intValue()))
+                .andExpect(jsonPath("$.[0].roomNumber").doesNotExist());
+
+        // Without fields, the reservations are whole
+        expectListContainsReservation(reservationMockMvc.perform(get("/reservations?from={from}&to={to}",
+                DEFAULT_START_DATE.toString(), DEFAULT_END_DATE.toString())), reservation);
+    }
+
+    @Test
+    @Transactional
+    public void shouldGetArchivedReservationsOnlyFromArchive() throws Exception {
+        reservation.setStartDate(LocalDate.of(1999, 12, 30));
+        reservation.setEndDate(LocalDate.of(1999, 12, 31));
+        reservationService.save(reservation);
+
+        assertEquals(1, reservationService.archive(LocalDate.of(2000, 1, 1), 10));
+
+        expectListContainsReservation(reservationMockMvc.perform(get("/reservations/archive?from={from}&to={to}",
+                "1999-12-01", "1999-12-31"))
+                .andExpect(status().isOk()), reservation);
+        reservationMockMvc.perform(get("/reservations/archive?from={from}&to={to}&roomNumber={roomNumber}",
+                "1999-12-01", "1999-12-31", UPDATED_ROOM_NUMBER))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isEmpty());
+        reservationMockMvc.perform(get("/reservations?from={from}&to={to}", "1999-12-01", "1999-12-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isEmpty());
+    }
+
+    @Test
+    @Transactional
+    public void shouldExportMatchingReservationsAsNdjson() throws Exception {
+        reservation.setStartDate(LocalDate.of(1999, 12, 30));
+        reservation.setEndDate(LocalDate.of(1999, 12, 31));
+        reservationService.save(reservation);
+        assertEquals(1, reservationService.archive(LocalDate.of(2000, 1, 1), 10));
+        Reservation current = new Reservation();
+        current.setFirstName(UPDATED_FIRST_NAME);
+        current.setLastName(UPDATED_LAST_NAME);
+        current.setRoomNumber(DEFAULT_ROOM_NUMBER);
+        current.setStartDate(LocalDate.of(2000, 1, 2));
+        current.setEndDate(LocalDate.of(2000, 1, 5));
+        reservationService.save(current);
+
+        assertThat(export("/reservations/export?from={from}&to={to}&roomNumber={roomNumber}&includeArchived=true",
+                "1999-12-01", "2000-01-31", DEFAULT_ROOM_NUMBER))
+                .extracting(Reservation::getFirstName).containsExactly(DEFAULT_FIRST_NAME, UPDATED_FIRST_NAME);
+        assertThat(export("/reservations/export?from={from}&to={to}&roomNumber={roomNumber}",
+                "1999-12-01", "2000-01-31", DEFAULT_ROOM_NUMBER))
+                .extracting(Reservation::getId).containsExactly(current.getId());
+        assertThat(export("/reservations/export?to={to}&roomNumber={roomNumber}&includeArchived=true",
+                "1999-12-31", UPDATED_ROOM_NUMBER)).isEmpty();
+        assertThat(export("/reservations/export?from={from}&includeArchived=true", "2000-01-01"))
+                .extracting(Reservation::getId).containsExactly(current.getId());
+        assertThat(export("/reservations/export?includeArchived=true"))
+                .extracting(Reservation::getFirstName).containsExactly(DEFAULT_FIRST_NAME, UPDATED_FIRST_NAME);
+    }
+
+    @Test
+    public void shouldFailOnExportOfReversedPeriod() throws Exception {
+        reservationMockMvc.perform(get("/reservations/export?from={from}&to={to}", "2017-11-20", "2017-11-10"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void shouldGetReservationsWithinDateRangeAsSmile() throws Exception {
+        reservationRepository.saveAndFlush(reservation);
+
+        byte[] body = reservationMockMvc.perform(get("/reservations?from={from}&to={to}",
+                DEFAULT_START_DATE.toString(), DEFAULT_END_DATE.toString())
+                .accept(SmileHttpMessageConverter.APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SmileHttpMessageConverter.APPLICATION_SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        Reservation[] reservations = smileMessageConverter.getObjectMapper().readValue(body, Reservation[].class);
+        Reservation found = Arrays.stream(reservations)
+                .filter(candidate -> candidate.getId().equals(reservation.getId()))
+                .findFirst().orElseThrow(AssertionError::new);
+        assertThat(found.getFirstName()).isEqualTo(DEFAULT_FIRST_NAME);
+        assertThat(found.getStartDate()).isEqualTo(DEFAULT_START_DATE);
+    }
+
+    @Test
+    @Transactional
+    public void shouldCreateReservationFromSmile() throws Exception {
+        byte[] body = smileMessageConverter.getObjectMapper().writeValueAsBytes(reservation);
+
+        reservationMockMvc.perform(post("/reservations")
+                .contentType(SmileHttpMessageConverter.APPLICATION_SMILE)
+                .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8));
+
+        assertThat(reservationService.findReservationsByDateRange(Reservation.DEFAULT_HOTEL_ID, DEFAULT_ROOM_NUMBER,
+                DEFAULT_START_DATE, DEFAULT_END_DATE)).extracting(Reservation::getFirstName)
+                .containsExactly(DEFAULT_FIRST_NAME);
+    }
+
     @Test
     @Transactional
     public void shouldGetExistingReservation() throws Exception {
@@ -280,6 +680,43 @@ public class ReservationControllerIntTest {
 
     }
 
+    @Test
+    @Transactional
+    public void shouldNotReturnUnmodifiedReservation() throws Exception {
+        reservationRepository.saveAndFlush(reservation);
+
+        String eTag = reservationMockMvc.perform(get("/reservations/{id}", reservation.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"0\""))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        reservationMockMvc.perform(get("/reservations/{id}", reservation.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @Transactional
+    public void shouldNotReturnUnmodifiedReservationsWithinDateRange() throws Exception {
+        reservationRepository.saveAndFlush(reservation);
+        String url = String.format("/reservations?from=%s&to=%s", DEFAULT_START_DATE, DEFAULT_END_DATE);
+
+        String eTag = reservationMockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        reservationMockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+
+        reservation.setFirstName(UPDATED_FIRST_NAME);
+        reservationRepository.saveAndFlush(reservation);
+
+        reservationMockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(eTag)));
+    }
+
     @Test
     @Transactional
     public void shouldReturnNotFoundOnGetNonExistingReservation() throws Exception {
@@ -297,6 +734,8 @@ public class ReservationControllerIntTest {
 
         // Update the reservation
         Reservation updatedReservation = reservationRepository.findOne(reservation.getId());
+        // Disconnect from session so that the updates on updatedReservation are not directly saved in db
+        em.detach(updatedReservation);
         updatedReservation.setFirstName(UPDATED_FIRST_NAME);
         updatedReservation.setLastName(UPDATED_LAST_NAME);
         updatedReservation.setRoomNumber(UPDATED_ROOM_NUMBER);
@@ -319,6 +758,42 @@ public class ReservationControllerIntTest {
         assertThat(testReservation.getEndDate()).isEqualTo(UPDATED_END_DATE);
     }
 
+    @Test
+    @Transactional
+    public void shouldFailOnUpdateOfStaleReservation() throws Exception {
+        reservationService.save(reservation);
+        reservationRepository.flush();
+
+        Reservation updatedReservation = reservationRepository.findOne(reservation.getId());
+        // Disconnect from session so that the updates on updatedReservation are not directly saved in db
+        em.detach(updatedReservation);
+        updatedReservation.setFirstName(UPDATED_FIRST_NAME);
+
+        reservationMockMvc.perform(put("/reservations")
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(updatedReservation)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    @Transactional
+    public void shouldFailOnUpdateOfDeletedReservation() throws Exception {
+        reservationService.save(reservation);
+        reservationRepository.flush();
+        em.detach(reservation);
+        reservationService.delete(reservation.getHotelId(), reservation.getId());
+        int databaseSizeBeforeUpdate = reservationRepository.findAll().size();
+
+        reservationMockMvc.perform(put("/reservations")
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(reservation)))
+                .andExpect(status().isPreconditionFailed());
+
+        assertThat(reservationRepository.findAll()).hasSize(databaseSizeBeforeUpdate);
+    }
+
     @Test
     @Transactional
     public void shouldCreateReservationOnUpdateNonExistingReservation() throws Exception {
@@ -349,6 +824,42 @@ public class ReservationControllerIntTest {
         assertThat(reservationList).isEmpty();
     }
 
+    @Test
+    @Transactional
+    public void shouldDeleteReservationAtMatchingVersion() throws Exception {
+        reservationService.save(reservation);
+        reservationRepository.flush();
+
+        reservationMockMvc.perform(delete("/reservations/{id}", reservation.getId())
+                .header(HttpHeaders.IF_MATCH, "\"1\""))
+                .andExpect(status().isPreconditionFailed());
+        reservationMockMvc.perform(delete("/reservations/{id}", reservation.getId())
+                .header(HttpHeaders.IF_MATCH, "W/\"0\""))
+                .andExpect(status().isOk());
+
+        assertThat(reservationRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    @Transactional
+    public void shouldDeleteReservationsByIds() throws Exception {
+        Reservation otherRoomReservation = new Reservation();
+        otherRoomReservation.setFirstName(UPDATED_FIRST_NAME);
+        otherRoomReservation.setLastName(UPDATED_LAST_NAME);
+        otherRoomReservation.setRoomNumber(UPDATED_ROOM_NUMBER);
+        otherRoomReservation.setStartDate(DEFAULT_START_DATE);
+        otherRoomReservation.setEndDate(DEFAULT_END_DATE);
+        reservationService.save(reservation);
+        reservationService.save(otherRoomReservation);
+
+        reservationMockMvc.perform(delete("/reservations")
+                .param("ids", reservation.getId() + "," + otherRoomReservation.getId() + "," + Long.MAX_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2"));
+
+        assertThat(reservationRepository.findAll()).isEmpty();
+    }
+
     @Test
     @Transactional
     public void shouldNotDeleteNonExistingReservation() throws Exception {
@@ -368,6 +879,20 @@ public class ReservationControllerIntTest {
         TestUtil.equalsVerifier(Reservation.class);
     }
 
+    private List<Reservation> export(String urlTemplate, Object... urlVariables) throws Exception {
+        String body = reservationMockMvc.perform(get(urlTemplate, urlVariables))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        List<Reservation> reservations = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (!line.isEmpty()) {
+                reservations.add(objectMapper.readValue(line, Reservation.class));
+            }
+        }
+        return reservations;
+    }
+
     private void expectListContainsReservation(ResultActions resultActions, Reservation reservation) throws Exception {
         resultActions.andExpect(jsonPath("$.[*].id").value(hasItem(reservation.getId().intValue())))
                 .andExpect(jsonPath("$.[*].firstName").value(hasItem(reservation.getFirstName())))
@@ -0,0 +1,92 @@
+package com.marryat.controller;
+
+import com.marryat.MarryatHotelsReservationsApplication;
+import com.marryat.domain.Reservation;
+import com.marryat.service.ReservationService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test class for the RoomController.
+ *
+ * @see RoomController
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = MarryatHotelsReservationsApplication.class)
+public class RoomControllerIntTest {
+
+    private static final Integer ROOM_NUMBER = 7;
+    private static final LocalDate START_DATE = LocalDate.of(2017, 11, 10);
+    private static final LocalDate END_DATE = LocalDate.of(2017, 11, 14);
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    private MockMvc roomMockMvc;
+
+    @Before
+    public void setup() {
+        RoomController roomResource = new RoomController(reservationService);
+        this.roomMockMvc = MockMvcBuilders.standaloneSetup(roomResource)
+                .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @Test
+    @Transactional
+    public void shouldExcludeBookedRoom() throws Exception {
+        Reservation reservation = new Reservation();
+        reservation.setFirstName("John");
+        reservation.setLastName("Doe");
+        reservation.setRoomNumber(ROOM_NUMBER);
+        reservation.setStartDate(START_DATE);
+        reservation.setEndDate(END_DATE);
+        reservationService.save(reservation);
+
+        roomMockMvc.perform(get("/rooms/available?from={from}&to={to}", END_DATE.toString(),
+                END_DATE.plusDays(1).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").value(not(hasItem(ROOM_NUMBER))))
+                .andExpect(jsonPath("$").value(hasItem(ROOM_NUMBER + 1)));
+
+        roomMockMvc.perform(get("/rooms/available?from={from}&to={to}", END_DATE.plusDays(1).toString(),
+                END_DATE.plusDays(1).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").value(hasItem(ROOM_NUMBER)));
+    }
+
+    @Test
+    public void shouldFailOnPeriodEndingBeforeStart() throws Exception {
+        roomMockMvc.perform(get("/rooms/available?from={from}&to={to}", END_DATE.toString(),
+                START_DATE.toString()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void shouldFailOnPeriodLongerThanMaximum() throws Exception {
+        roomMockMvc.perform(get("/rooms/available?from={from}&to={to}", START_DATE.toString(),
+                START_DATE.plusDays(RoomController.MAX_AVAILABILITY_DAYS).toString()))
+                .andExpect(status().isBadRequest());
+        roomMockMvc.perform(get("/rooms/available?from={from}&to={to}", START_DATE.toString(),
+                START_DATE.plusDays(RoomController.MAX_AVAILABILITY_DAYS - 1).toString()))
+                .andExpect(status().isOk());
+    }
+}
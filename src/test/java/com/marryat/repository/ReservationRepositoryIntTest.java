@@ -0,0 +1,164 @@
+package com.marryat.repository;
+
+import com.marryat.MarryatHotelsReservationsApplication;
+import com.marryat.domain.Reservation;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the indexes backing the ReservationRepository queries.
+ *
+ * @see ReservationRepository
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = MarryatHotelsReservationsApplication.class)
+@Transactional
+public class ReservationRepositoryIntTest {
+    private static final int HOTEL = Reservation.DEFAULT_HOTEL_ID;
+    private static final int ROOMS = 20;
+    private static final int STAYS_PER_ROOM = 10;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ArchivedReservationRepository archivedReservationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Before
+    public void seed() {
+        for (int room = 1; room <= ROOMS; room++) {
+            for (int stay = 0; stay < STAYS_PER_ROOM; stay++) {
+                Reservation reservation = new Reservation();
+                reservation.setFirstName("John");
+                reservation.setLastName("Doe");
+                reservation.setRoomNumber(room);
+                reservation.setStartDate(LocalDate.of(2017, 1, 1).plusWeeks(stay));
+                reservation.setEndDate(LocalDate.of(2017, 1, 5).plusWeeks(stay));
+                reservationRepository.save(reservation);
+            }
+        }
+        reservationRepository.flush();
+    }
+
+    @Test
+    public void shouldUseHotelDatesIndexForDateRangeQuery() {
+        assertThat(explain("select * from reservation r where r.hotel_id = 1 " +
+                "and r.start_date <= DATE '2017-02-10' and r.end_date >= DATE '2017-02-01'"))
+                .containsIgnoringCase("idx_reservation_hotel_dates");
+    }
+
+    @Test
+    public void shouldUseDatesIndexForShardDateRangeQuery() {
+        assertThat(explain("select r.start_date, r.end_date from reservation r " +
+                "where r.start_date <= DATE '2017-02-10' and r.end_date >= DATE '2017-02-01'"))
+                .containsIgnoringCase("idx_reservation_dates");
+        assertThat(explain("select a.start_date, a.end_date from reservation_archive a " +
+                "where a.start_date <= DATE '2017-02-10' and a.end_date >= DATE '2017-02-01'"))
+                .containsIgnoringCase("idx_reservation_archive_dates");
+    }
+
+    @Test
+    public void shouldUseDatesIndexForEndedReservationsQuery() {
+        assertThat(explain("select r.id from reservation r where r.end_date < DATE '2017-01-06' " +
+                "order by r.end_date limit 10"))
+                .containsIgnoringCase("idx_reservation_dates");
+    }
+
+    @Test
+    public void shouldUseRoomDatesIndexForRoomDateRangeQuery() {
+        assertThat(explain("select * from reservation r where r.hotel_id = 1 and r.room_number = 1 " +
+                "and r.start_date <= DATE '2017-02-10' and r.end_date >= DATE '2017-02-01'"))
+                .containsIgnoringCase("idx_reservation_room_dates");
+    }
+
+    @Test
+    public void shouldReadReservationsNotManagedByPersistenceContext() {
+        entityManager.clear();
+
+        List<Reservation> reservations = reservationRepository.findReservationsWithinDateRange(HOTEL,
+                LocalDate.of(2017, 2, 1), LocalDate.of(2017, 2, 10));
+
+        assertThat(reservations).hasSize(ROOMS * 2);
+        reservations.forEach(reservation -> {
+            assertThat(entityManager.contains(reservation)).isFalse();
+            assertThat(reservation.getFirstName()).isEqualTo("John");
+            assertThat(reservation.getVersion()).isNotNull();
+        });
+        assertThat(reservationRepository.findReservationsOfRoomWithinDateRange(HOTEL, 1, LocalDate.of(2017, 2, 1),
+                LocalDate.of(2017, 2, 10))).hasSize(2);
+        assertThat(reservationRepository.findReservationsWithinDateRange(HOTEL + 1, LocalDate.of(2017, 2, 1),
+                LocalDate.of(2017, 2, 10))).isEmpty();
+        assertThat(reservationRepository.findByIdGreaterThanOrderByIdAsc(0L, new PageRequest(0, 5)))
+                .hasSize(5).isSortedAccordingTo(Comparator.comparing(Reservation::getId));
+    }
+
+    @Test
+    public void shouldStreamReservationsMatchingGivenFilters() {
+        try (Stream<Reservation> all = reservationRepository.streamReservations(HOTEL)) {
+            assertThat(all.collect(Collectors.toList())).hasSize(ROOMS * STAYS_PER_ROOM)
+                    .isSortedAccordingTo(Comparator.comparing(Reservation::getId));
+        }
+        try (Stream<Reservation> ofRoom = reservationRepository.streamReservationsOfRoom(HOTEL, 1)) {
+            assertThat(ofRoom.count()).isEqualTo(STAYS_PER_ROOM);
+        }
+        try (Stream<Reservation> fromFeb = reservationRepository.streamReservationsWithinDateRange(HOTEL,
+                LocalDate.of(2017, 2, 1), LocalDate.of(9999, 12, 31))) {
+            assertThat(fromFeb.count()).isEqualTo(ROOMS * (STAYS_PER_ROOM - 4));
+        }
+        try (Stream<Reservation> matching = reservationRepository.streamReservationsOfRoomWithinDateRange(HOTEL, 1,
+                LocalDate.of(2017, 2, 1), LocalDate.of(2017, 2, 10))) {
+            assertThat(matching.count()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void shouldUseRoomAndDatesIndexesForStreamsInIdOrder() {
+        assertThat(explain("select * from reservation r where r.hotel_id = 1 and r.room_number = 1 order by r.id"))
+                .containsIgnoringCase("idx_reservation_room_dates");
+        assertThat(explain("select * from reservation r where r.hotel_id = 1 " +
+                "and r.start_date <= DATE '2017-02-10' and r.end_date >= DATE '2017-02-01' order by r.id"))
+                .containsIgnoringCase("idx_reservation_hotel_dates");
+    }
+
+    @Test
+    public void shouldOnlyArchiveReservationsStillEndedBeforeDate() {
+        LocalDate before = LocalDate.of(2017, 1, 6);
+        List<Long> ids = reservationRepository.findReservationsEndingBefore(before, new PageRequest(0, ROOMS)).stream()
+                .map(Reservation::getId).collect(Collectors.toList());
+        assertThat(ids).hasSize(ROOMS);
+        jdbcTemplate.update("update reservation set end_date = DATE '2017-01-07' where id = ?", ids.get(0));
+
+        assertThat(reservationRepository.findIdsByIdInEndingBefore(ids, before)).hasSize(ROOMS - 1)
+                .doesNotContain(ids.get(0));
+        assertThat(archivedReservationRepository.archive(ids, before)).isEqualTo(ROOMS - 1);
+        assertThat(reservationRepository.deleteReservationsByIdInEndingBefore(ids, before)).isEqualTo(ROOMS - 1);
+        assertThat(reservationRepository.exists(ids.get(0))).isTrue();
+    }
+
+    private String explain(String query) {
+        return jdbcTemplate.queryForObject("explain " + query, String.class);
+    }
+}
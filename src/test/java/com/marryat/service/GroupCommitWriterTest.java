@@ -0,0 +1,174 @@
+package com.marryat.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.marryat.config.ReservationProperties;
+import com.marryat.domain.Reservation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GroupCommitWriterTest {
+    private static final LocalDate NOV_10 = LocalDate.of(2017, 11, 10);
+
+    private final ReservationService reservationService = mock(ReservationService.class);
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private GroupCommitWriter writer;
+
+    @Before
+    public void setUp() {
+        ReservationProperties properties = new ReservationProperties();
+        properties.getGroupCommit().setMaxBatchSize(3);
+        properties.getGroupCommit().setMaxWaitMillis(10_000);
+        writer = new GroupCommitWriter(reservationService, properties, metricRegistry);
+        writer.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        writer.stop();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldSaveConcurrentReservationsInOneBatch() throws Exception {
+        Reservation first = reservation(1);
+        Reservation second = reservation(1);
+        Reservation third = reservation(2);
+        ReservationConflictException conflict = new ReservationConflictException(second, 7L);
+        when(reservationService.saveAll(Arrays.asList(first, second, third))).thenReturn(Arrays.asList(
+                BatchItemResult.created(0, first), BatchItemResult.conflict(1, conflict),
+                BatchItemResult.created(2, third)));
+
+        CompletableFuture<Reservation> firstSaved = writer.submit(first);
+        CompletableFuture<Reservation> secondSaved = writer.submit(second);
+        CompletableFuture<Reservation> thirdSaved = writer.submit(third);
+
+        assertSame(first, firstSaved.get(5, TimeUnit.SECONDS));
+        assertSame(third, thirdSaved.get(5, TimeUnit.SECONDS));
+        try {
+            secondSaved.get(5, TimeUnit.SECONDS);
+            fail("The overlapping reservation should have failed");
+        } catch (ExecutionException e) {
+            assertEquals(Long.valueOf(7L), ((ReservationConflictException) e.getCause()).getConflictingId());
+        }
+        verify(reservationService, times(1)).saveAll(any(List.class));
+        assertEquals(3, metricRegistry.histogram("histogram.group-commit.batch.size").getSnapshot().getMax());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldSaveReservationsOneByOneWhenBatchFails() throws Exception {
+        Reservation first = reservation(1);
+        Reservation second = reservation(2);
+        Reservation third = reservation(3);
+        DataAccessResourceFailureException failure = new DataAccessResourceFailureException("Lost connection");
+        when(reservationService.saveAll(any(List.class))).thenThrow(failure);
+        when(reservationService.save(first)).thenReturn(first);
+        when(reservationService.save(second)).thenThrow(failure);
+        when(reservationService.save(third)).thenReturn(third);
+
+        CompletableFuture<Reservation> firstSaved = writer.submit(first);
+        CompletableFuture<Reservation> secondSaved = writer.submit(second);
+        CompletableFuture<Reservation> thirdSaved = writer.submit(third);
+
+        assertSame(first, firstSaved.get(5, TimeUnit.SECONDS));
+        assertSame(third, thirdSaved.get(5, TimeUnit.SECONDS));
+        try {
+            secondSaved.get(5, TimeUnit.SECONDS);
+            fail("The reservation failing alone should have failed");
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+        assertEquals(1, metricRegistry.counter("counter.group-commit.fallbacks").getCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldKeepWritingAfterBatchThrowsError() throws Exception {
+        Reservation first = reservation(1);
+        Reservation second = reservation(2);
+        Reservation third = reservation(3);
+        StackOverflowError error = new StackOverflowError();
+        when(reservationService.saveAll(any(List.class))).thenThrow(error).thenAnswer(invocation -> {
+            List<Reservation> reservations = invocation.getArgumentAt(0, List.class);
+            return Arrays.asList(BatchItemResult.created(0, reservations.get(0)),
+                    BatchItemResult.created(1, reservations.get(1)), BatchItemResult.created(2, reservations.get(2)));
+        });
+
+        List<CompletableFuture<Reservation>> failed = Arrays.asList(writer.submit(reservation(1)),
+                writer.submit(reservation(2)), writer.submit(reservation(3)));
+        for (CompletableFuture<Reservation> future : failed) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("The reservations of the failed batch should have failed");
+            } catch (ExecutionException e) {
+                assertSame(error, e.getCause());
+            }
+        }
+        CompletableFuture<Reservation> firstSaved = writer.submit(first);
+        CompletableFuture<Reservation> secondSaved = writer.submit(second);
+        CompletableFuture<Reservation> thirdSaved = writer.submit(third);
+
+        assertSame(first, firstSaved.get(5, TimeUnit.SECONDS));
+        assertSame(second, secondSaved.get(5, TimeUnit.SECONDS));
+        assertSame(third, thirdSaved.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldWithdrawReservationNotCommittedWithinTimeout() throws InterruptedException {
+        writer.stop();
+        ReservationProperties properties = new ReservationProperties();
+        properties.getGroupCommit().setMaxBatchSize(3);
+        properties.getGroupCommit().setMaxWaitMillis(500);
+        properties.getGroupCommit().setTimeoutMillis(50);
+        writer = new GroupCommitWriter(reservationService, properties, metricRegistry);
+        writer.start();
+
+        try {
+            writer.save(reservation(1));
+            fail("The reservation should have been withdrawn");
+        } catch (RejectedExecutionException expected) {
+            writer.stop();
+        }
+
+        verify(reservationService, never()).saveAll(any(List.class));
+    }
+
+    @Test
+    public void shouldRejectReservationsOnceStopped() throws InterruptedException {
+        writer.stop();
+
+        assertTrue(writer.submit(reservation(1)).isCompletedExceptionally());
+    }
+
+    private static Reservation reservation(int roomNumber) {
+        Reservation reservation = new Reservation();
+        reservation.setFirstName("John");
+        reservation.setLastName("Doe");
+        reservation.setRoomNumber(roomNumber);
+        reservation.setStartDate(NOV_10);
+        reservation.setEndDate(NOV_10);
+        return reservation;
+    }
+}
@@ -0,0 +1,41 @@
+package com.marryat.service;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class OccupancyTest {
+    private static final LocalDate FROM = LocalDate.of(2017, 11, 10);
+    private static final LocalDate TO = LocalDate.of(2017, 11, 14);
+
+    @Test
+    public void shouldCountRoomsBookedOnEveryDay() {
+        Occupancy occupancy = new Occupancy(FROM, TO);
+        occupancy.add(FROM, FROM.plusDays(1));
+        occupancy.add(FROM.plusDays(1), TO);
+        occupancy.add(TO, TO);
+
+        assertArrayEquals(new int[]{1, 2, 1, 1, 2}, occupancy.getRooms());
+    }
+
+    @Test
+    public void shouldCountOnlyDaysOfStaysWithinRange() {
+        Occupancy occupancy = new Occupancy(FROM, TO);
+        occupancy.add(FROM.minusDays(5), FROM.plusDays(1));
+        occupancy.add(TO.minusDays(1), TO.plusDays(5));
+        occupancy.add(FROM.minusDays(5), TO.plusDays(5));
+        occupancy.add(TO.plusDays(1), TO.plusDays(5));
+
+        assertArrayEquals(new int[]{2, 2, 1, 2, 2}, occupancy.getRooms());
+    }
+
+    @Test
+    public void shouldCountSingleDayRange() {
+        Occupancy occupancy = new Occupancy(FROM, FROM);
+        occupancy.add(FROM.minusDays(1), FROM);
+
+        assertArrayEquals(new int[]{1}, occupancy.getRooms());
+    }
+}
@@ -0,0 +1,63 @@
+package com.marryat.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.marryat.config.HotelShards;
+import com.marryat.config.ReservationProperties;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReservationArchiverTest {
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2017-11-10T12:00:00Z"), ZoneOffset.UTC);
+    private static final LocalDate HORIZON = LocalDate.of(2017, 11, 1);
+
+    private final ReservationService reservationService = mock(ReservationService.class);
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    @Test
+    public void shouldArchiveBatchesUntilNoneIsFull() {
+        ReservationProperties properties = new ReservationProperties();
+        properties.getArchive().setHorizonDays(9);
+        properties.getArchive().setBatchSize(2);
+        ReservationArchiver archiver = new ReservationArchiver(reservationService, new HotelShards(properties),
+                properties, metricRegistry, CLOCK);
+        when(reservationService.archive(HORIZON, 2)).thenReturn(2, 2, 1);
+
+        assertEquals(5, archiver.archive());
+
+        verify(reservationService, times(3)).archive(HORIZON, 2);
+        assertEquals(5, metricRegistry.counter("counter.archive.reservations").getCount());
+    }
+
+    @Test
+    public void shouldArchiveEveryShard() {
+        ReservationProperties properties = new ReservationProperties();
+        properties.getArchive().setHorizonDays(9);
+        properties.getArchive().setBatchSize(2);
+        properties.getShards().setEnabled(true);
+        properties.getShards().getUrls().add("jdbc:h2:mem:shard-1");
+        ReservationArchiver archiver = new ReservationArchiver(reservationService, new HotelShards(properties),
+                properties, metricRegistry, CLOCK);
+        List<Integer> archivedShards = new ArrayList<>();
+        when(reservationService.archive(HORIZON, 2)).then(invocation -> {
+            archivedShards.add(HotelShards.currentShard());
+            return 1;
+        });
+
+        assertEquals(2, archiver.archive());
+
+        assertEquals(Arrays.asList(0, 1), archivedShards);
+    }
+}
@@ -0,0 +1,96 @@
+package com.marryat.service;
+
+import com.marryat.config.ReservationProperties;
+import com.marryat.domain.Reservation;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ReservationCacheTest {
+    private static final int SHARD = 0;
+    private static final long RESERVATION_ID = 1L;
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<Long, Reservation> loader = id -> {
+        loads.incrementAndGet();
+        Reservation reservation = new Reservation();
+        reservation.setId(id);
+        return reservation;
+    };
+
+    @Test
+    public void shouldLoadReservationOnce() {
+        ReservationCache cache = new ReservationCache(new ReservationProperties());
+
+        Reservation reservation = cache.get(SHARD, RESERVATION_ID, loader);
+
+        assertSame(reservation, cache.get(SHARD, RESERVATION_ID, loader));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    public void shouldReloadInvalidatedReservation() {
+        ReservationCache cache = new ReservationCache(new ReservationProperties());
+        cache.get(SHARD, RESERVATION_ID, loader);
+
+        cache.invalidate(SHARD, RESERVATION_ID);
+        cache.get(SHARD, RESERVATION_ID, loader);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void shouldNotCacheMissingReservation() {
+        ReservationCache cache = new ReservationCache(new ReservationProperties());
+
+        assertNull(cache.get(SHARD, RESERVATION_ID, id -> null));
+        cache.get(SHARD, RESERVATION_ID, loader);
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void shouldNotCacheReservationInvalidatedWhileLoading() {
+        ReservationCache cache = new ReservationCache(new ReservationProperties());
+        cache.get(SHARD, RESERVATION_ID, id -> {
+            cache.invalidate(SHARD, id);
+            return loader.apply(id);
+        });
+
+        cache.get(SHARD, RESERVATION_ID, loader);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void shouldKeepReservationsOfShardsApart() {
+        ReservationCache cache = new ReservationCache(new ReservationProperties());
+
+        assertNull(cache.get(SHARD + 1, RESERVATION_ID, id -> null));
+        Reservation reservation = cache.get(SHARD, RESERVATION_ID, loader);
+
+        assertEquals(RESERVATION_ID, (long) reservation.getId());
+        assertNull(cache.get(SHARD + 1, RESERVATION_ID, id -> null));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void shouldBypassDisabledCache() {
+        ReservationProperties properties = new ReservationProperties();
+        properties.getCache().setEnabled(false);
+        ReservationCache cache = new ReservationCache(properties);
+
+        cache.get(SHARD, RESERVATION_ID, loader);
+        cache.get(SHARD, RESERVATION_ID, loader);
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.stats().requestCount());
+    }
+}
@@ -0,0 +1,101 @@
+package com.marryat.service;
+
+import com.marryat.MarryatHotelsReservationsApplication;
+import com.marryat.domain.Reservation;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of the order of the changes committed concurrently to the same reservation.
+ *
+ * @see ReservationChangeLog
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = MarryatHotelsReservationsApplication.class)
+public class ReservationChangeLogIntTest {
+    private static final LocalDate FROM = LocalDate.of(2033, 6, 1);
+    private static final LocalDate TO = LocalDate.of(2033, 6, 5);
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private ReservationChangeLog changeLog;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long id;
+
+    @After
+    public void tearDown() {
+        if (id != null) {
+            reservationService.delete(Reservation.DEFAULT_HOTEL_ID, id);
+        }
+    }
+
+    @Test
+    public void shouldLogDeleteAfterUpdateCommittedBeforeIt() throws Exception {
+        Reservation reservation = new Reservation();
+        reservation.setFirstName("John");
+        reservation.setLastName("Doe");
+        reservation.setRoomNumber(11);
+        reservation.setStartDate(FROM);
+        reservation.setEndDate(TO);
+        id = reservationService.save(reservation).getId();
+        long since = changeLog.getLastSequence();
+
+        CountDownLatch updateCommitted = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> update = executor.submit(() -> new TransactionTemplate(transactionManager).execute(status -> {
+                // Runs before the update is logged, leaving the delete time to overtake it
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCommit() {
+                        updateCommitted.countDown();
+                        try {
+                            Thread.sleep(200);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+                Reservation updated = reservationService.findOne(Reservation.DEFAULT_HOTEL_ID, id);
+                updated.setFirstName("Jane");
+                return reservationService.save(updated);
+            }));
+            Future<Boolean> delete = executor.submit(() -> {
+                updateCommitted.await(5, TimeUnit.SECONDS);
+                return reservationService.delete(Reservation.DEFAULT_HOTEL_ID, id);
+            });
+            update.get(5, TimeUnit.SECONDS);
+            assertThat(delete.get(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            executor.shutdown();
+        }
+
+        List<ReservationChange> changes = changeLog.findAfter(since, 100);
+        assertThat(changes).extracting(ReservationChange::getType)
+                .containsExactly(ReservationChange.Type.SAVED, ReservationChange.Type.DELETED);
+        id = null;
+    }
+}
@@ -0,0 +1,124 @@
+package com.marryat.service;
+
+import com.marryat.config.ReservationProperties;
+import com.marryat.domain.Reservation;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReservationChangeLogTest {
+    private static final long START = 1000L;
+
+    private final List<Runnable> notifications = new ArrayList<>();
+
+    private ReservationChangeLog changeLog;
+
+    @Before
+    public void setUp() {
+        ReservationProperties properties = new ReservationProperties();
+        properties.getChanges().setCapacity(3);
+        changeLog = new ReservationChangeLog(properties, START, notifications::add);
+    }
+
+    @Test
+    public void shouldNumberChangesInOrder() {
+        Reservation reservation = new Reservation(1L, 1, "John", "Doe", 7, LocalDate.of(2017, 11, 10),
+                LocalDate.of(2017, 11, 14), 0L);
+        changeLog.saved(reservation);
+        changeLog.deleted(1L);
+
+        List<ReservationChange> changes = changeLog.findAfter(START, 10);
+
+        assertEquals(2, changes.size());
+        assertEquals(START + 1, changes.get(0).getSequence());
+        assertEquals(ReservationChange.Type.SAVED, changes.get(0).getType());
+        assertEquals(reservation, changes.get(0).getReservation());
+        assertNotSame(reservation, changes.get(0).getReservation());
+        assertEquals(START + 2, changes.get(1).getSequence());
+        assertEquals(ReservationChange.Type.DELETED, changes.get(1).getType());
+        assertNull(changes.get(1).getReservation());
+        assertEquals(START + 2, changeLog.getLastSequence());
+    }
+
+    @Test
+    public void shouldGetOldestChangesAfterSequenceUpToLimit() {
+        changeLog.deleted(1L);
+        changeLog.deleted(2L);
+        changeLog.deleted(3L);
+
+        List<ReservationChange> changes = changeLog.findAfter(START + 1, 1);
+
+        assertEquals(1, changes.size());
+        assertEquals(Long.valueOf(2L), changes.get(0).getId());
+        assertTrue(changeLog.findAfter(START + 3, 10).isEmpty());
+    }
+
+    @Test
+    public void shouldNotKeepEvictedOrUnknownSequences() {
+        assertTrue(changeLog.isKept(START));
+        for (long id = 1; id <= 4; id++) {
+            changeLog.archived(id);
+        }
+
+        assertFalse(changeLog.isKept(START));
+        assertTrue(changeLog.isKept(START + 1));
+        assertTrue(changeLog.isKept(START + 4));
+        assertFalse(changeLog.isKept(START + 5));
+        assertEquals(3, changeLog.findAfter(START, 10).size());
+    }
+
+    @Test
+    public void shouldNotifyListenersUntilRemoved() {
+        AtomicInteger notified = new AtomicInteger();
+        Runnable listener = notified::incrementAndGet;
+        changeLog.addListener(listener);
+        changeLog.deleted(1L);
+        notifications.remove(0).run();
+        changeLog.removeListener(listener);
+        changeLog.deleted(2L);
+        notifications.remove(0).run();
+
+        assertEquals(1, notified.get());
+    }
+
+    @Test
+    public void shouldNotifyListenersOffWritePathOnceForPendingChanges() {
+        AtomicInteger notified = new AtomicInteger();
+        changeLog.addListener(notified::incrementAndGet);
+        changeLog.deleted(1L);
+        changeLog.deleted(2L);
+
+        assertEquals(0, notified.get());
+        assertEquals(1, notifications.size());
+
+        notifications.remove(0).run();
+        assertEquals(1, notified.get());
+
+        changeLog.deleted(3L);
+        assertEquals(1, notifications.size());
+    }
+
+    @Test
+    public void shouldNotifyOtherListenersWhenOneFails() {
+        AtomicInteger notified = new AtomicInteger();
+        changeLog.addListener(() -> {
+            throw new IllegalStateException("Consumer gone");
+        });
+        changeLog.addListener(notified::incrementAndGet);
+        changeLog.deleted(1L);
+
+        notifications.remove(0).run();
+
+        assertEquals(1, notified.get());
+    }
+}
@@ -0,0 +1,91 @@
+package com.marryat.service;
+
+import com.marryat.config.ReservationProperties;
+import com.marryat.domain.Reservation;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ReservationRangeCacheTest {
+    private static final int HOTEL = Reservation.DEFAULT_HOTEL_ID;
+    private static final LocalDate FROM = LocalDate.of(2017, 11, 10);
+    private static final LocalDate TO = LocalDate.of(2017, 11, 16);
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Supplier<List<Reservation>> loader = () -> {
+        loads.incrementAndGet();
+        return Collections.singletonList(new Reservation());
+    };
+
+    @Test
+    public void shouldLoadRangeOnce() {
+        ReservationRangeCache cache = new ReservationRangeCache(new ReservationProperties());
+
+        List<Reservation> reservations = cache.get(HOTEL, null, FROM, TO, loader);
+
+        assertSame(reservations, cache.get(HOTEL, null, FROM, TO, loader));
+        cache.get(HOTEL, 1, FROM, TO, loader);
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    public void shouldInvalidateOnlyOverlappedRanges() {
+        ReservationRangeCache cache = new ReservationRangeCache(new ReservationProperties());
+        cache.get(HOTEL, null, FROM, TO, loader);
+        cache.get(HOTEL, 1, FROM, TO, loader);
+        cache.get(HOTEL, 2, FROM, TO, loader);
+        cache.get(HOTEL, null, TO.plusDays(1), TO.plusDays(7), loader);
+
+        cache.invalidate(HOTEL, 1, TO, TO.plusDays(1));
+        cache.get(HOTEL, null, FROM, TO, loader);
+        cache.get(HOTEL, 1, FROM, TO, loader);
+        cache.get(HOTEL, 2, FROM, TO, loader);
+        cache.get(HOTEL, null, TO.plusDays(1), TO.plusDays(7), loader);
+
+        assertEquals(7, loads.get());
+    }
+
+    @Test
+    public void shouldKeepRangesOfOtherHotels() {
+        ReservationRangeCache cache = new ReservationRangeCache(new ReservationProperties());
+        cache.get(HOTEL, null, FROM, TO, loader);
+
+        cache.invalidate(HOTEL + 1, 1, FROM, TO);
+        cache.get(HOTEL, null, FROM, TO, loader);
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void shouldNotCacheRangeInvalidatedWhileLoading() {
+        ReservationRangeCache cache = new ReservationRangeCache(new ReservationProperties());
+        cache.get(HOTEL, null, FROM, TO, () -> {
+            cache.invalidate(HOTEL, 1, FROM, FROM);
+            return Collections.emptyList();
+        });
+
+        cache.get(HOTEL, null, FROM, TO, loader);
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void shouldBypassDisabledCache() {
+        ReservationProperties properties = new ReservationProperties();
+        properties.getRangeCache().setEnabled(false);
+        ReservationRangeCache cache = new ReservationRangeCache(properties);
+
+        cache.get(HOTEL, null, FROM, TO, loader);
+        cache.get(HOTEL, null, FROM, TO, loader);
+
+        assertEquals(2, loads.get());
+    }
+}
@@ -1,18 +1,43 @@
 package com.marryat.service;
 
+import com.marryat.config.HotelShards;
+import com.marryat.config.ReservationProperties;
 import com.marryat.domain.Reservation;
+import com.marryat.repository.ArchivedReservationRepository;
 import com.marryat.repository.ReservationRepository;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -22,13 +47,35 @@ import static org.mockito.Mockito.when;
 @RunWith(MockitoJUnitRunner.class)
 public class ReservationServiceTest {
     private static final long RESERVATION_ID = 1L;
+    private static final int HOTEL = Reservation.DEFAULT_HOTEL_ID;
+    private static final int SHARD = HotelShards.PRIMARY_SHARD;
     private static final LocalDate FROM = LocalDate.of(2017, 11, 10);
     private static final LocalDate TO = LocalDate.of(2017, 11, 15);
 
     @Mock
     private ReservationRepository reservationRepository;
+    @Mock
+    private ArchivedReservationRepository archivedReservationRepository;
+    @Mock
+    private RoomIntervalIndex intervalIndex;
+    @Mock
+    private RoomAvailabilityIndex availabilityIndex;
+    @Mock
+    private ReservationCache reservationCache;
+    @Mock
+    private ReservationRangeCache rangeCache;
+    @Mock
+    private RoomLocks roomLocks;
+    @Mock
+    private ReservationChangeLog changeLog;
+    @Spy
+    private HotelShards shards = new HotelShards(new ReservationProperties());
     @InjectMocks
     private ReservationService reservationService;
+    @Captor
+    private ArgumentCaptor<Function<Long, Reservation>> loader;
+    @Captor
+    private ArgumentCaptor<Supplier<List<Reservation>>> rangeLoader;
     private Reservation reservation = mock(Reservation.class);
 
     @Before
@@ -41,45 +88,381 @@ public class ReservationServiceTest {
                 "\"endDate\": \"2017-11-11\"\n" +
                 "}");
         when(reservation.getId()).thenReturn(RESERVATION_ID);
+        when(reservation.getHotelId()).thenReturn(HOTEL);
+        when(reservationRepository.findReservationById(RESERVATION_ID, HOTEL))
+                .thenReturn(new Reservation(RESERVATION_ID, HOTEL, "John", "Doe", 1, FROM, TO, 0L));
     }
 
     @Test
     public void shouldSaveReservation() {
+            when(reservationRepository.save(reservation)).thenReturn(reservation);
             reservationService.save(reservation);
+            verify(intervalIndex, times(1)).claim(reservation);
             verify(reservationRepository, times(1)).save(reservation);
+            verify(availabilityIndex, times(1)).book(reservation);
+            verify(reservationCache, times(1)).invalidate(SHARD, RESERVATION_ID);
+            verify(changeLog, times(1)).saved(reservation);
+    }
+
+    @Test(expected = OptimisticLockingFailureException.class)
+    public void shouldNotSaveVersionOfDeletedReservation() {
+        when(reservation.getVersion()).thenReturn(3L);
+        when(reservationRepository.findReservationById(RESERVATION_ID, HOTEL)).thenReturn(null);
+        try {
+            reservationService.save(reservation);
+        } finally {
+            verify(reservationRepository, never()).save(reservation);
+        }
+    }
+
+    @Test(expected = ReservationConflictException.class)
+    public void shouldNotSaveOverlappingReservation() {
+        ReservationConflictException conflict = new ReservationConflictException(reservation, 2L);
+        when(intervalIndex.claim(reservation)).thenThrow(conflict);
+        try {
+            reservationService.save(reservation);
+        } finally {
+            verify(reservationRepository, never()).save(reservation);
+        }
+    }
+
+    @Test
+    public void shouldRevertClaimWhenSaveFails() {
+        Reservation other = new Reservation();
+        other.setRoomNumber(1);
+        other.setStartDate(FROM);
+        other.setEndDate(TO);
+        RoomIntervalIndex.Claim claim = new RoomIntervalIndex().claim(other);
+        when(intervalIndex.claim(reservation)).thenReturn(claim);
+        when(reservationRepository.save(reservation)).thenThrow(new IllegalStateException());
+        try {
+            reservationService.save(reservation);
+        } catch (IllegalStateException expected) {
+            verify(intervalIndex, times(1)).revert(claim);
+            return;
+        }
+        fail("Save should have failed");
+    }
+
+    @Test
+    public void shouldLockRoomBeforeClaimingIt() {
+        when(reservation.getRoomNumber()).thenReturn(1);
+        when(reservationRepository.save(reservation)).thenReturn(reservation);
+        reservationService.save(reservation);
+        InOrder inOrder = inOrder(roomLocks, intervalIndex);
+        inOrder.verify(roomLocks, times(1)).lock(HOTEL, 1);
+        inOrder.verify(intervalIndex, times(1)).claim(reservation);
+        verify(reservationRepository, never()).findIdsOfRoomWithinDateRange(any(), any(), any(), any());
+    }
+
+    @Test
+    public void shouldLockRoomReservationMovesOutOf() {
+        Reservation stored = new Reservation(RESERVATION_ID, HOTEL, "John", "Doe", 2, FROM, TO, 0L);
+        when(reservation.getRoomNumber()).thenReturn(1);
+        when(reservationRepository.findReservationById(RESERVATION_ID, HOTEL)).thenReturn(stored);
+        when(reservationRepository.save(reservation)).thenReturn(reservation);
+        reservationService.save(reservation);
+        verify(roomLocks, times(1)).lock(Arrays.asList(stored, reservation));
+        verify(roomLocks, times(1)).lock(HOTEL, 1);
+    }
+
+    @Test(expected = ReservationConflictException.class)
+    public void shouldNotSaveReservationOverlappingBookingOfAnotherNode() {
+        when(roomLocks.isDatabase()).thenReturn(true);
+        when(reservation.getRoomNumber()).thenReturn(1);
+        when(reservation.getStartDate()).thenReturn(FROM);
+        when(reservation.getEndDate()).thenReturn(TO);
+        when(reservationRepository.findIdsOfRoomWithinDateRange(HOTEL, 1, FROM, TO))
+                .thenReturn(Arrays.asList(RESERVATION_ID, RESERVATION_ID + 1));
+        try {
+            reservationService.save(reservation);
+        } finally {
+            verify(intervalIndex, never()).claim(reservation);
+        }
+    }
+
+    @Test
+    public void shouldLockAllRoomsOfBatchUpfront() {
+        Reservation other = mock(Reservation.class);
+        when(other.getId()).thenReturn(null);
+        when(reservation.getRoomNumber()).thenReturn(1);
+        when(other.getRoomNumber()).thenReturn(2);
+        when(reservationRepository.save(any(Reservation.class))).then(returnsFirstArg());
+        reservationService.saveAll(Arrays.asList(reservation, other));
+        verify(roomLocks, times(1)).lock(Arrays.asList(reservation, other));
+    }
+
+    @Test
+    public void shouldLockRoomsBatchMovesOutOfInSameCall() {
+        Reservation stored = new Reservation(RESERVATION_ID, HOTEL, "John", "Doe", 2, FROM, TO, 0L);
+        Reservation other = mock(Reservation.class);
+        when(other.getId()).thenReturn(null);
+        when(reservation.getRoomNumber()).thenReturn(1);
+        when(other.getRoomNumber()).thenReturn(3);
+        when(reservationRepository.findReservationsByIdIn(Collections.singletonList(RESERVATION_ID)))
+                .thenReturn(Collections.singletonList(stored));
+        when(reservationRepository.save(any(Reservation.class))).then(returnsFirstArg());
+        reservationService.saveAll(Arrays.asList(reservation, other));
+        InOrder inOrder = inOrder(roomLocks, reservationRepository);
+        inOrder.verify(roomLocks, times(1)).lock(Arrays.asList(reservation, other, stored));
+        inOrder.verify(reservationRepository, times(1)).save(reservation);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotSaveBatchSpanningShards() {
+        Reservation other = mock(Reservation.class);
+        when(other.getHotelId()).thenReturn(HOTEL + 1);
+        when(shards.shardOf(HOTEL + 1)).thenReturn(1);
+        try {
+            reservationService.saveAll(Arrays.asList(reservation, other));
+        } finally {
+            verify(reservationRepository, never()).save(any(Reservation.class));
+        }
+    }
+
+    @Test
+    public void shouldReportConflictsInBatch() {
+        Reservation overlapping = mock(Reservation.class);
+        when(overlapping.getId()).thenReturn(null);
+        ReservationConflictException conflict = new ReservationConflictException(overlapping, RESERVATION_ID);
+        when(reservationRepository.save(reservation)).thenReturn(reservation);
+        when(intervalIndex.claim(overlapping)).thenThrow(conflict);
+
+        List<BatchItemResult> results = reservationService.saveAll(Arrays.asList(reservation, overlapping));
+
+        assertEquals(BatchItemResult.Outcome.UPDATED, results.get(0).getOutcome());
+        assertEquals(BatchItemResult.Outcome.CONFLICT, results.get(1).getOutcome());
+        assertEquals(1, results.get(1).getIndex());
+        verify(reservationRepository, never()).save(overlapping);
     }
 
     @Test
     public void shouldGetExistingReservation() {
-        reservationService.findOne(RESERVATION_ID);
+        when(reservationCache.get(eq(SHARD), eq(RESERVATION_ID), loader.capture())).then(invocation ->
+                loader.getValue().apply(RESERVATION_ID));
+        when(reservationRepository.findOne(RESERVATION_ID)).thenReturn(reservation);
+        assertEquals(reservation, reservationService.findOne(HOTEL, RESERVATION_ID));
+        verify(reservationCache, times(1)).get(eq(SHARD), eq(RESERVATION_ID), any());
+    }
+
+    @Test
+    public void shouldNotGetReservationOfOtherHotel() {
+        when(reservationCache.get(anyInt(), eq(RESERVATION_ID), any())).thenReturn(reservation);
+        assertNull(reservationService.findOne(HOTEL + 1, RESERVATION_ID));
+    }
+
+    @Test
+    public void shouldGetExistingReservationBypassingCacheInReadWriteTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            reservationService.findOne(HOTEL, RESERVATION_ID);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
         verify(reservationRepository, times(1)).findOne(RESERVATION_ID);
+        verify(reservationCache, never()).get(anyInt(), eq(RESERVATION_ID), any());
     }
 
     @Test
     public void shouldGetGetAllReservations() {
         reservationService.findAll();
-        verify(reservationRepository, times(1)).findAll();
+        verify(reservationRepository, times(1)).findAllReservations();
+    }
+
+    @Test
+    public void shouldGetPageOfReservationsAfterId() {
+        reservationService.findAfter(HOTEL, null, 10);
+        verify(reservationRepository, times(1))
+                .findByHotelIdAndIdGreaterThanOrderByIdAsc(HOTEL, 0L, new PageRequest(0, 10));
+        reservationService.findAfter(HOTEL, RESERVATION_ID, 10);
+        verify(reservationRepository, times(1))
+                .findByHotelIdAndIdGreaterThanOrderByIdAsc(HOTEL, RESERVATION_ID, new PageRequest(0, 10));
+    }
+
+    @Test
+    public void shouldFindAvailableRooms() {
+        reservationService.findAvailableRooms(HOTEL, FROM, TO);
+        verify(availabilityIndex, times(1)).findAvailable(HOTEL, FROM, TO);
     }
 
     @Test
     public void shouldDeleteExistingReservation() {
-        when(reservationRepository.exists(RESERVATION_ID)).thenReturn(Boolean.TRUE);
-        boolean deleted = reservationService.delete(RESERVATION_ID);
-        verify(reservationRepository, times(1)).delete(RESERVATION_ID);
+        when(reservationRepository.deleteReservationById(RESERVATION_ID, HOTEL)).thenReturn(1);
+        boolean deleted = reservationService.delete(HOTEL, RESERVATION_ID);
+        InOrder inOrder = inOrder(roomLocks, reservationRepository);
+        inOrder.verify(roomLocks, times(1)).lock(HOTEL, 1);
+        inOrder.verify(reservationRepository, times(1)).deleteReservationById(RESERVATION_ID, HOTEL);
+        verify(reservationRepository, never()).findVersionById(RESERVATION_ID, HOTEL);
+        verify(intervalIndex, times(1)).remove(RESERVATION_ID);
+        verify(availabilityIndex, times(1)).remove(RESERVATION_ID);
+        verify(reservationCache, times(1)).invalidate(SHARD, RESERVATION_ID);
+        verify(changeLog, times(1)).deleted(RESERVATION_ID);
         assertTrue(deleted);
     }
 
     @Test
     public void shouldNotDeleteNonExistingReservation() {
-        when(reservationRepository.exists(RESERVATION_ID)).thenReturn(Boolean.FALSE);
-        boolean deleted = reservationService.delete(RESERVATION_ID);
-        verify(reservationRepository, never()).delete(RESERVATION_ID);
+        when(reservationRepository.findReservationById(RESERVATION_ID, HOTEL)).thenReturn(null);
+        boolean deleted = reservationService.delete(HOTEL, RESERVATION_ID);
+        verify(reservationRepository, never()).deleteReservationById(RESERVATION_ID, HOTEL);
+        verify(intervalIndex, never()).remove(RESERVATION_ID);
+        verify(reservationCache, never()).invalidate(SHARD, RESERVATION_ID);
+        verify(changeLog, never()).deleted(RESERVATION_ID);
         assertFalse(deleted);
     }
 
+    @Test
+    public void shouldDeleteReservationsInOneStatement() {
+        List<Long> ids = Arrays.asList(RESERVATION_ID, RESERVATION_ID + 1);
+        List<Reservation> found = Collections.singletonList(new Reservation(RESERVATION_ID + 1, HOTEL, "John", "Doe",
+                1, FROM, TO, 0L));
+        when(reservationRepository.findReservationsByIdInAndHotelId(ids, HOTEL)).thenReturn(found);
+        when(reservationRepository.deleteReservationsByIdIn(Collections.singletonList(RESERVATION_ID + 1)))
+                .thenReturn(1);
+        assertEquals(1, reservationService.delete(HOTEL, ids));
+        verify(roomLocks, times(1)).lock(found);
+        verify(intervalIndex, never()).remove(RESERVATION_ID);
+        verify(intervalIndex, times(1)).remove(RESERVATION_ID + 1);
+        verify(reservationCache, never()).invalidate(SHARD, RESERVATION_ID);
+        verify(reservationCache, times(1)).invalidate(SHARD, RESERVATION_ID + 1);
+        verify(changeLog, never()).deleted(RESERVATION_ID);
+        verify(changeLog, times(1)).deleted(RESERVATION_ID + 1);
+    }
+
+    @Test
+    public void shouldDeleteReservationAtExpectedVersion() {
+        when(reservationRepository.deleteByIdAndVersion(RESERVATION_ID, HOTEL, 3L)).thenReturn(1);
+        assertTrue(reservationService.delete(HOTEL, RESERVATION_ID, 3L));
+        verify(intervalIndex, times(1)).remove(RESERVATION_ID);
+        verify(reservationCache, times(1)).invalidate(SHARD, RESERVATION_ID);
+    }
+
+    @Test(expected = OptimisticLockingFailureException.class)
+    public void shouldFailOnDeleteOfReservationAtOtherVersion() {
+        when(reservationRepository.deleteByIdAndVersion(RESERVATION_ID, HOTEL, 3L)).thenReturn(0);
+        when(reservationRepository.findVersionById(RESERVATION_ID, HOTEL)).thenReturn(4L);
+        reservationService.delete(HOTEL, RESERVATION_ID, 3L);
+    }
+
+    @Test
+    public void shouldArchiveBatchOfEndedReservations() {
+        List<Long> ids = Arrays.asList(RESERVATION_ID, RESERVATION_ID + 1);
+        List<Reservation> ended = ended(ids);
+        when(reservationRepository.findReservationsEndingBefore(FROM, new PageRequest(0, 2))).thenReturn(ended);
+        when(reservationRepository.findIdsByIdInEndingBefore(ids, FROM)).thenReturn(ids);
+        when(archivedReservationRepository.archive(ids, FROM)).thenReturn(2);
+        when(reservationRepository.deleteReservationsByIdInEndingBefore(ids, FROM)).thenReturn(2);
+
+        assertEquals(2, reservationService.archive(FROM, 2));
+
+        InOrder inOrder = inOrder(roomLocks, archivedReservationRepository);
+        inOrder.verify(roomLocks, times(1)).lock(ended);
+        inOrder.verify(archivedReservationRepository, times(1)).archive(ids, FROM);
+        verify(intervalIndex, times(1)).remove(RESERVATION_ID + 1);
+        verify(availabilityIndex, times(1)).remove(RESERVATION_ID + 1);
+        verify(reservationCache, times(1)).invalidate(SHARD, RESERVATION_ID + 1);
+        verify(changeLog, times(1)).archived(RESERVATION_ID + 1);
+    }
+
+    @Test
+    public void shouldNotArchiveReservationUpdatedMeanwhile() {
+        List<Long> ids = Arrays.asList(RESERVATION_ID, RESERVATION_ID + 1);
+        when(reservationRepository.findReservationsEndingBefore(FROM, new PageRequest(0, 2))).thenReturn(ended(ids));
+        when(reservationRepository.findIdsByIdInEndingBefore(ids, FROM)).thenReturn(ids);
+        when(archivedReservationRepository.archive(ids, FROM)).thenReturn(2);
+        when(reservationRepository.deleteReservationsByIdInEndingBefore(ids, FROM)).thenReturn(1);
+
+        try {
+            reservationService.archive(FROM, 2);
+            fail("Archived a batch missing a reservation");
+        } catch (OptimisticLockingFailureException e) {
+            verify(changeLog, never()).archived(any());
+        }
+    }
+
+    @Test
+    public void shouldNotArchiveWithoutEndedReservations() {
+        when(reservationRepository.findReservationsEndingBefore(FROM, new PageRequest(0, 2)))
+                .thenReturn(Collections.emptyList());
+
+        assertEquals(0, reservationService.archive(FROM, 2));
+
+        verify(archivedReservationRepository, never()).archive(any(), any());
+    }
+
+    @Test
+    public void shouldLeaveOutReservationUpdatedBeforeItsRoomGotLocked() {
+        List<Long> ids = Arrays.asList(RESERVATION_ID, RESERVATION_ID + 1);
+        List<Long> stillEnded = Collections.singletonList(RESERVATION_ID + 1);
+        when(reservationRepository.findReservationsEndingBefore(FROM, new PageRequest(0, 2))).thenReturn(ended(ids));
+        when(reservationRepository.findIdsByIdInEndingBefore(ids, FROM)).thenReturn(stillEnded);
+        when(archivedReservationRepository.archive(stillEnded, FROM)).thenReturn(1);
+        when(reservationRepository.deleteReservationsByIdInEndingBefore(stillEnded, FROM)).thenReturn(1);
+
+        assertEquals(1, reservationService.archive(FROM, 2));
+
+        verify(changeLog, never()).archived(RESERVATION_ID);
+        verify(changeLog, times(1)).archived(RESERVATION_ID + 1);
+    }
+
+    @Test
+    public void shouldCountOccupancyOfHotelOrOfWholeShard() {
+        Object[] stay = {FROM, FROM};
+        when(reservationRepository.streamStaysOfHotelWithinDateRange(HOTEL, FROM, TO))
+                .thenReturn(Stream.of(stay, stay));
+        when(archivedReservationRepository.streamStaysOfHotelWithinDateRange(HOTEL, FROM, TO))
+                .thenReturn(Stream.empty());
+        when(reservationRepository.streamStaysWithinDateRange(FROM, TO)).thenReturn(Stream.<Object[]>of(stay));
+        when(archivedReservationRepository.streamStaysWithinDateRange(FROM, TO)).thenReturn(Stream.<Object[]>of(stay));
+
+        assertEquals(2, reservationService.countOccupancy(HOTEL, FROM, TO).getRooms()[0]);
+        assertEquals(2, reservationService.countOccupancy(null, FROM, TO).getRooms()[0]);
+    }
+
     @Test
     public void shouldFilterReservationsByStartDate() {
-        reservationService.findReservationsByDateRange(FROM, TO);
-        verify(reservationRepository, times(1)).findReservationsWithinDateRange(FROM, TO);
+        when(rangeCache.get(eq(HOTEL), eq(null), eq(FROM), eq(TO), rangeLoader.capture())).then(invocation ->
+                rangeLoader.getValue().get());
+        reservationService.findReservationsByDateRange(HOTEL, FROM, TO);
+        verify(reservationRepository, times(1)).findReservationsWithinDateRange(HOTEL, FROM, TO);
+    }
+
+    @Test
+    public void shouldFilterReservationsOfRoomByDateRange() {
+        when(rangeCache.get(eq(HOTEL), eq(1), eq(FROM), eq(TO), rangeLoader.capture())).then(invocation ->
+                rangeLoader.getValue().get());
+        reservationService.findReservationsByDateRange(HOTEL, 1, FROM, TO);
+        verify(reservationRepository, times(1)).findReservationsOfRoomWithinDateRange(HOTEL, 1, FROM, TO);
+    }
+
+    @Test
+    public void shouldFilterReservationsBypassingCacheInReadWriteTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            reservationService.findReservationsByDateRange(HOTEL, FROM, TO);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        verify(reservationRepository, times(1)).findReservationsWithinDateRange(HOTEL, FROM, TO);
+        verify(rangeCache, never()).get(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void shouldInvalidateRangesOfPreviousAndNewDatesOnUpdate() {
+        Reservation saved = new Reservation(RESERVATION_ID, HOTEL, "John", "Doe", 2, TO, TO.plusDays(1), 1L);
+        when(reservationRepository.save(saved)).thenReturn(saved);
+        RoomAvailabilityIndex index = new RoomAvailabilityIndex(new ReservationProperties());
+        index.book(new Reservation(RESERVATION_ID, HOTEL, "John", "Doe", 1, FROM, TO, 0L));
+        when(availabilityIndex.book(saved)).thenReturn(index.book(saved));
+
+        reservationService.save(saved);
+
+        verify(rangeCache, times(1)).invalidate(HOTEL, 2, TO, TO.plusDays(1));
+        verify(rangeCache, times(1)).invalidate(HOTEL, 1, FROM, TO);
+    }
+
+    private static List<Reservation> ended(List<Long> ids) {
+        return ids.stream().map(id -> new Reservation(id, HOTEL, "John", "Doe", 1, FROM.minusDays(5),
+                FROM.minusDays(1), 0L)).collect(Collectors.toList());
     }
 }
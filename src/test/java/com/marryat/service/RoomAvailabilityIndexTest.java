@@ -0,0 +1,104 @@
+package com.marryat.service;
+
+import com.marryat.config.ReservationProperties;
+import com.marryat.domain.Reservation;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class RoomAvailabilityIndexTest {
+    private static final int HOTEL = Reservation.DEFAULT_HOTEL_ID;
+    private static final LocalDate NOV_10 = LocalDate.of(2017, 11, 10);
+    private static final LocalDate NOV_14 = LocalDate.of(2017, 11, 14);
+    private static final LocalDate NOV_15 = LocalDate.of(2017, 11, 15);
+    private static final LocalDate NOV_18 = LocalDate.of(2017, 11, 18);
+
+    private RoomAvailabilityIndex index;
+
+    @Before
+    public void setUp() {
+        ReservationProperties properties = new ReservationProperties();
+        properties.getRooms().setCount(3);
+        index = new RoomAvailabilityIndex(properties);
+    }
+
+    @Test
+    public void shouldFindAllRoomsOfEmptyHotel() {
+        assertEquals(Arrays.asList(1, 2, 3), index.findAvailable(HOTEL, NOV_10, NOV_18));
+    }
+
+    @Test
+    public void shouldExcludeRoomsBookedOnAnyDayOfRange() {
+        index.book(reservation(1L, 1, NOV_10, NOV_14));
+        index.book(reservation(2L, 3, NOV_15, NOV_18));
+
+        assertEquals(Arrays.asList(2, 3), index.findAvailable(HOTEL, NOV_10, NOV_10));
+        assertEquals(Arrays.asList(2), index.findAvailable(HOTEL, NOV_14, NOV_15));
+        assertEquals(Arrays.asList(1, 2), index.findAvailable(HOTEL, NOV_18, NOV_18));
+        assertEquals(Arrays.asList(1, 2, 3), index.findAvailable(HOTEL, NOV_18.plusDays(1), NOV_18.plusDays(1)));
+    }
+
+    @Test
+    public void shouldMoveBookingOfUpdatedReservation() {
+        index.book(reservation(1L, 1, NOV_10, NOV_14));
+
+        RoomAvailabilityIndex.Booking previous = index.book(reservation(1L, 2, NOV_10, NOV_14));
+        assertEquals(Arrays.asList(1, 3), index.findAvailable(HOTEL, NOV_10, NOV_14));
+
+        index.restore(1L, previous);
+        assertEquals(Arrays.asList(2, 3), index.findAvailable(HOTEL, NOV_10, NOV_14));
+    }
+
+    @Test
+    public void shouldFreeRoomOfRemovedReservation() {
+        index.book(reservation(1L, 1, NOV_10, NOV_14));
+
+        index.remove(1L);
+
+        assertEquals(Arrays.asList(1, 2, 3), index.findAvailable(HOTEL, NOV_10, NOV_14));
+    }
+
+    @Test
+    public void shouldIgnoreRoomsOutsideInventory() {
+        index.book(reservation(1L, 4, NOV_10, NOV_14));
+
+        assertEquals(Arrays.asList(1, 2, 3), index.findAvailable(HOTEL, NOV_10, NOV_14));
+    }
+
+    @Test
+    public void shouldOnlyIndexFirstDaysOfOverlongStay() {
+        LocalDate lastIndexedDay = NOV_10.plusDays(Reservation.MAX_STAY_DAYS - 1);
+        index.book(reservation(1L, 1, NOV_10, lastIndexedDay.plusYears(100)));
+
+        assertEquals(Arrays.asList(2, 3), index.findAvailable(HOTEL, lastIndexedDay, lastIndexedDay));
+        assertEquals(Arrays.asList(1, 2, 3), index.findAvailable(HOTEL, lastIndexedDay.plusDays(1),
+                lastIndexedDay.plusDays(1)));
+
+        index.remove(1L);
+        assertEquals(Arrays.asList(1, 2, 3), index.findAvailable(HOTEL, NOV_10, NOV_10));
+    }
+
+    @Test
+    public void shouldKeepHotelsApart() {
+        index.book(reservation(1L, 1, NOV_10, NOV_14));
+        Reservation otherHotel = reservation(2L, 2, NOV_10, NOV_14);
+        otherHotel.setHotelId(HOTEL + 1);
+        index.book(otherHotel);
+
+        assertEquals(Arrays.asList(2, 3), index.findAvailable(HOTEL, NOV_10, NOV_14));
+        assertEquals(Arrays.asList(1, 3), index.findAvailable(HOTEL + 1, NOV_10, NOV_14));
+    }
+
+    private static Reservation reservation(Long id, Integer roomNumber, LocalDate startDate, LocalDate endDate) {
+        Reservation reservation = new Reservation();
+        reservation.setId(id);
+        reservation.setRoomNumber(roomNumber);
+        reservation.setStartDate(startDate);
+        reservation.setEndDate(endDate);
+        return reservation;
+    }
+}
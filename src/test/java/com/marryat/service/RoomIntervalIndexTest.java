@@ -0,0 +1,93 @@
+package com.marryat.service;
+
+import com.marryat.domain.Reservation;
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RoomIntervalIndexTest {
+    private static final int HOTEL = Reservation.DEFAULT_HOTEL_ID;
+    private static final LocalDate NOV_10 = LocalDate.of(2017, 11, 10);
+    private static final LocalDate NOV_14 = LocalDate.of(2017, 11, 14);
+    private static final LocalDate NOV_15 = LocalDate.of(2017, 11, 15);
+    private static final LocalDate NOV_18 = LocalDate.of(2017, 11, 18);
+
+    private final RoomIntervalIndex index = new RoomIntervalIndex();
+
+    @Test
+    public void shouldDetectOverlapWithinRoom() {
+        index.add(reservation(1L, 1, NOV_10, NOV_14));
+
+        assertTrue(index.overlaps(HOTEL, 1, NOV_14, NOV_18));
+        assertTrue(index.overlaps(HOTEL, 1, LocalDate.of(2017, 11, 1), NOV_10));
+        assertTrue(index.overlaps(HOTEL, 1, LocalDate.of(2017, 11, 11), LocalDate.of(2017, 11, 12)));
+        assertFalse(index.overlaps(HOTEL, 1, NOV_15, NOV_18));
+        assertFalse(index.overlaps(HOTEL, 2, NOV_10, NOV_14));
+    }
+
+    @Test(expected = ReservationConflictException.class)
+    public void shouldRejectOverlappingClaim() {
+        index.add(reservation(1L, 1, NOV_10, NOV_14));
+        index.claim(reservation(null, 1, NOV_14, NOV_18));
+    }
+
+    @Test
+    public void shouldLetReservationMoveWithinItsOwnInterval() {
+        index.add(reservation(1L, 1, NOV_10, NOV_14));
+        index.add(reservation(2L, 1, NOV_15, NOV_18));
+
+        index.claim(reservation(1L, 1, LocalDate.of(2017, 11, 8), NOV_14));
+
+        assertTrue(index.overlaps(HOTEL, 1, LocalDate.of(2017, 11, 8), LocalDate.of(2017, 11, 8)));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void shouldRestoreReleasedIntervalOnRevert() {
+        index.add(reservation(1L, 1, NOV_10, NOV_14));
+
+        RoomIntervalIndex.Claim claim = index.claim(reservation(1L, 2, NOV_15, NOV_18));
+        assertFalse(index.overlaps(HOTEL, 1, NOV_10, NOV_14));
+        assertTrue(index.overlaps(HOTEL, 2, NOV_15, NOV_18));
+
+        index.revert(claim);
+        assertTrue(index.overlaps(HOTEL, 1, NOV_10, NOV_14));
+        assertFalse(index.overlaps(HOTEL, 2, NOV_15, NOV_18));
+    }
+
+    @Test
+    public void shouldNotDetectOverlapWithSameRoomOfOtherHotel() {
+        index.add(reservation(1L, 1, NOV_10, NOV_14));
+        Reservation otherHotel = reservation(null, 1, NOV_10, NOV_14);
+        otherHotel.setHotelId(HOTEL + 1);
+
+        index.claim(otherHotel);
+
+        assertTrue(index.overlaps(HOTEL + 1, 1, NOV_10, NOV_14));
+        assertFalse(index.overlaps(HOTEL + 2, 1, NOV_10, NOV_14));
+    }
+
+    @Test
+    public void shouldReleaseIntervalOnRemove() {
+        RoomIntervalIndex.Claim claim = index.claim(reservation(null, 1, NOV_10, NOV_14));
+        index.confirm(claim, 1L);
+
+        index.remove(1L);
+
+        assertFalse(index.overlaps(HOTEL, 1, NOV_10, NOV_14));
+        assertEquals(0, index.size());
+    }
+
+    private static Reservation reservation(Long id, Integer roomNumber, LocalDate startDate, LocalDate endDate) {
+        Reservation reservation = new Reservation();
+        reservation.setId(id);
+        reservation.setRoomNumber(roomNumber);
+        reservation.setStartDate(startDate);
+        reservation.setEndDate(endDate);
+        return reservation;
+    }
+}
@@ -0,0 +1,113 @@
+package com.marryat.service;
+
+import com.marryat.MarryatHotelsReservationsApplication;
+import com.marryat.domain.Reservation;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Test of the database room locks, the reservations inserted directly into the database standing for the ones saved
+ * by another node.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = MarryatHotelsReservationsApplication.class, properties = "reservations.locking.database=true")
+public class RoomLocksIntTest {
+    private static final LocalDate FROM = LocalDate.of(2032, 6, 1);
+    private static final LocalDate TO = LocalDate.of(2032, 6, 5);
+    private static final long OTHER_NODE_ID = Long.MAX_VALUE;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> saved = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        jdbcTemplate.update("DELETE FROM reservation WHERE id = ?", OTHER_NODE_ID);
+        saved.forEach(id -> reservationService.delete(Reservation.DEFAULT_HOTEL_ID, id));
+    }
+
+    @Test
+    public void shouldCreateLockRowOfBookedRoom() {
+        save(reservation(7));
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM room_lock WHERE hotel_id = 1 AND room_number = 7",
+                Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotSaveReservationOverlappingBookingOfAnotherNode() {
+        jdbcTemplate.update("INSERT INTO reservation (id, end_date, first_name, last_name, room_number, start_date," +
+                " version, hotel_id) VALUES (?, ?, 'Other', 'Node', 8, ?, 0, 1)",
+                OTHER_NODE_ID, Date.valueOf(TO), Date.valueOf(FROM));
+        try {
+            save(reservation(8));
+            fail("Reservation should overlap the one of the other node");
+        } catch (ReservationConflictException e) {
+            assertThat(e.getConflictingId()).isEqualTo(OTHER_NODE_ID);
+        }
+    }
+
+    @Test
+    public void shouldSaveOneOfConcurrentBookingsOfSameRoom() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Reservation>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Callable<Reservation> booking = () -> save(reservation(9));
+                results.add(executor.submit(booking));
+            }
+            int conflicts = 0;
+            for (Future<Reservation> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(ReservationConflictException.class);
+                    conflicts++;
+                }
+            }
+            assertThat(conflicts).isEqualTo(3);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Reservation save(Reservation reservation) {
+        Reservation result = reservationService.save(reservation);
+        synchronized (saved) {
+            saved.add(result.getId());
+        }
+        return result;
+    }
+
+    private static Reservation reservation(int roomNumber) {
+        Reservation reservation = new Reservation();
+        reservation.setFirstName("John");
+        reservation.setLastName("Doe");
+        reservation.setRoomNumber(roomNumber);
+        reservation.setStartDate(FROM);
+        reservation.setEndDate(TO);
+        return reservation;
+    }
+}
@@ -0,0 +1,159 @@
+package com.marryat.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.marryat.config.ReservationProperties;
+import com.marryat.domain.Reservation;
+import com.marryat.repository.RoomLockRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class RoomLocksTest {
+    private static final int HOTEL = 1;
+
+    private final RoomLockRepository roomLockRepository = mock(RoomLockRepository.class);
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final ExecutorService otherTransactions = Executors.newSingleThreadExecutor();
+    private RoomLocks roomLocks;
+
+    @Before
+    public void setUp() {
+        ReservationProperties properties = new ReservationProperties();
+        properties.getLocking().setStripes(4);
+        properties.getLocking().setTimeoutMillis(200);
+        roomLocks = new RoomLocks(properties, roomLockRepository, mock(PlatformTransactionManager.class),
+                metricRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        otherTransactions.shutdownNow();
+    }
+
+    @Test
+    public void shouldLockDifferentRoomsInParallel() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            roomLocks.lock(HOTEL, 1);
+            inOtherTransaction(() -> roomLocks.lock(HOTEL, 2)).get(1, TimeUnit.SECONDS);
+        } finally {
+            complete();
+        }
+        assertEquals(0, metricRegistry.timer("timer.room-locks.wait").getCount());
+        verifyZeroInteractions(roomLockRepository);
+    }
+
+    @Test
+    public void shouldLockSameRoomOfDifferentHotelsInParallel() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            roomLocks.lock(HOTEL, 1);
+            inOtherTransaction(() -> roomLocks.lock(HOTEL + 1, 1)).get(1, TimeUnit.SECONDS);
+        } finally {
+            complete();
+        }
+        assertEquals(0, metricRegistry.timer("timer.room-locks.wait").getCount());
+    }
+
+    @Test
+    public void shouldWaitForRoomLockedByAnotherTransaction() throws Exception {
+        CountDownLatch waiting = new CountDownLatch(1);
+        CompletableFuture<Void> other;
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            roomLocks.lock(HOTEL, 1);
+            other = inOtherTransaction(() -> {
+                waiting.countDown();
+                roomLocks.lock(HOTEL, 1);
+            });
+            assertTrue(waiting.await(1, TimeUnit.SECONDS));
+            Thread.sleep(50);
+            assertFalse(other.isDone());
+        } finally {
+            complete();
+        }
+        other.get(1, TimeUnit.SECONDS);
+        assertEquals(1, metricRegistry.timer("timer.room-locks.wait").getCount());
+        assertEquals(1, metricRegistry.counter("counter.room-locks.contended.1.1").getCount());
+    }
+
+    @Test
+    public void shouldFailWhenRoomStaysLocked() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            roomLocks.lock(rooms(1, 2));
+            inOtherTransaction(() -> roomLocks.lock(HOTEL, 2)).get(1, TimeUnit.SECONDS);
+            fail("Lock should have timed out");
+        } catch (Exception e) {
+            assertTrue(e.getCause() instanceof CannotAcquireLockException);
+        } finally {
+            complete();
+        }
+        assertEquals(1, metricRegistry.counter("counter.room-locks.timeouts").getCount());
+    }
+
+    @Test
+    public void shouldReleaseRoomsSharingStripe() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            roomLocks.lock(rooms(1, 5));
+            roomLocks.lock(rooms(5, 9, null));
+        } finally {
+            complete();
+        }
+        inOtherTransaction(() -> roomLocks.lock(HOTEL, 1)).get(1, TimeUnit.SECONDS);
+        assertEquals(0, metricRegistry.timer("timer.room-locks.wait").getCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotLockOutsideTransaction() {
+        roomLocks.lock(HOTEL, 1);
+    }
+
+    private static List<Reservation> rooms(Integer... roomNumbers) {
+        return Arrays.stream(roomNumbers).map(roomNumber -> {
+            Reservation reservation = new Reservation();
+            reservation.setHotelId(HOTEL);
+            reservation.setRoomNumber(roomNumber);
+            return reservation;
+        }).collect(Collectors.toList());
+    }
+
+    private CompletableFuture<Void> inOtherTransaction(Runnable action) {
+        return CompletableFuture.runAsync(() -> {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                action.run();
+            } finally {
+                complete();
+            }
+        }, otherTransactions);
+    }
+
+    private static void complete() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+}
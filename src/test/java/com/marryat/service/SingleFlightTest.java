@@ -0,0 +1,123 @@
+package com.marryat.service;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+    private static final long KEY = 1L;
+
+    private final List<Long> forgotten = new ArrayList<>();
+    private final SingleFlight<Long, Object> singleFlight = new SingleFlight<>(forgotten::add);
+    private final ExecutorService callers = Executors.newFixedThreadPool(2);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void shouldShareResultOfRunningCall() throws Exception {
+        Object result = new Object();
+        CompletableFuture<Object> first = call(() -> result);
+        awaitCalls(1);
+        CompletableFuture<Object> second = call(Object::new);
+        awaitCoalesced(1);
+
+        release.countDown();
+
+        assertSame(result, first.get(1, TimeUnit.SECONDS));
+        assertSame(result, second.get(1, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertTrue(forgotten.isEmpty());
+    }
+
+    @Test
+    public void shouldShareFailureOfRunningCall() throws Exception {
+        IllegalStateException failure = new IllegalStateException();
+        CompletableFuture<Object> first = call(() -> {
+            throw failure;
+        });
+        awaitCalls(1);
+        CompletableFuture<Object> second = call(Object::new);
+        awaitCoalesced(1);
+
+        release.countDown();
+
+        for (CompletableFuture<Object> caller : Arrays.asList(first, second)) {
+            try {
+                caller.get(1, TimeUnit.SECONDS);
+                fail("Call should have failed");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+    }
+
+    @Test
+    public void shouldStartNewCallOnceRunningOneIsForgotten() throws Exception {
+        CompletableFuture<Object> first = call(Object::new);
+        awaitCalls(1);
+
+        singleFlight.forget(key -> key == KEY);
+        Object second = singleFlight.execute(KEY, () -> {
+            calls.incrementAndGet();
+            return new Object();
+        });
+        release.countDown();
+        first.get(1, TimeUnit.SECONDS);
+
+        assertEquals(2, calls.get());
+        assertEquals(0, singleFlight.coalescedCount());
+        assertNotNull(second);
+        assertEquals(1, forgotten.size());
+    }
+
+    /**
+     * Run a call of the key on another thread, returning once the latch is released.
+     */
+    private CompletableFuture<Object> call(Supplier<Object> result) {
+        return CompletableFuture.supplyAsync(() -> singleFlight.execute(KEY, () -> {
+            calls.incrementAndGet();
+            try {
+                release.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return result.get();
+        }), callers);
+    }
+
+    private void awaitCalls(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && calls.get() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, calls.get());
+    }
+
+    private void awaitCoalesced(long count) throws InterruptedException {
+        for (int i = 0; i < 100 && singleFlight.coalescedCount() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, singleFlight.coalescedCount());
+    }
+}